@@ -0,0 +1,193 @@
+package com.yourorg.sparklog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Parses every event log in a directory in one JVM, one {@link SparkEventLogParser} per log.
+ *
+ * Logs run on virtual threads when the runtime has them (Java 21+), else on a pool of one
+ * thread per core. Concurrency is bounded by a heap budget rather than a thread count: each
+ * log reserves an estimate of its heap use (see {@link #weightMb}), including its exact-percentile
+ * buffers if that mode is on, before it starts, so many small logs run side by side while a few
+ * large ones take turns. Reservations are taken on the submitting thread in size order, so logs
+ * start largest first and the longest parse does not end up last.
+ */
+final class BatchParser {
+  /** Fixed per-log cost: decode buffers, parser tables. */
+  private static final long BASE_WEIGHT_MB = 16;
+  /** Aggregates grow with stage and executor counts, which roughly track log size. */
+  private static final long BYTES_PER_WEIGHT_MB = 4L << 20;
+  private static final int SLOWEST = 10;
+
+  private final long exactBudgetBytes;
+  private final int budgetMb;
+  private final Semaphore heap;
+
+  BatchParser(long heapBudgetBytes, long exactBudgetBytes) {
+    this.exactBudgetBytes = exactBudgetBytes;
+    this.budgetMb = (int) Math.max(BASE_WEIGHT_MB, heapBudgetBytes >> 20);
+    this.heap = new Semaphore(budgetMb, true);
+  }
+
+  public static class Summary {
+    public int files;
+    public int failed;
+    public long totalBytes;
+    public long wallMs;
+    public double filesPerSec;
+    public double mbPerSec;
+    public int heapBudgetMb;
+    public String executor;
+    public List<Run> slowest = new ArrayList<>();
+    public List<Run> failures = new ArrayList<>();
+  }
+
+  public static class Run {
+    public String log;
+    public long bytes;
+    public long parseMs;
+    public String error;
+  }
+
+  /** Parses each log under {@code inputDir} into {@code outDir/<log name>/}. */
+  Summary run(Path inputDir, File outDir) throws Exception {
+    List<Path> logs = listLogs(inputDir);
+    Map<Path, Long> sizes = new HashMap<>();
+    for (Path p : logs) sizes.put(p, sizeOf(p));
+    logs.sort(Comparator.comparing((Path p) -> sizes.get(p)).reversed().thenComparing(Comparator.naturalOrder()));
+
+    Summary s = new Summary();
+    s.heapBudgetMb = budgetMb;
+    List<Run> runs = Collections.synchronizedList(new ArrayList<>());
+    ObjectMapper om = new ObjectMapper();
+
+    long t0 = System.nanoTime();
+    ExecutorService pool = newExecutor(s);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Path log : logs) {
+        long bytes = sizes.get(log);
+        int weight = weightMb(bytes);
+        heap.acquire(weight); // released by the task
+        try {
+          futures.add(pool.submit(() -> {
+            try {
+              runs.add(parseOne(om, log, bytes, weight, new File(outDir, log.getFileName().toString())));
+            } finally {
+              heap.release(weight);
+            }
+            return null;
+          }));
+        } catch (RejectedExecutionException e) {
+          heap.release(weight);
+          throw e;
+        }
+      }
+      for (Future<?> f : futures) f.get();
+    } finally {
+      pool.shutdown();
+    }
+    s.wallMs = (System.nanoTime() - t0) / 1_000_000;
+
+    for (Run r : runs) {
+      s.files++;
+      s.totalBytes += r.bytes;
+      if (r.error != null) s.failures.add(r);
+    }
+    s.failed = s.failures.size();
+    double sec = Math.max(1, s.wallMs) / 1000.0;
+    s.filesPerSec = s.files / sec;
+    s.mbPerSec = s.totalBytes / (double) (1 << 20) / sec;
+
+    List<Run> ok = new ArrayList<>(runs);
+    ok.removeIf(r -> r.error != null);
+    ok.sort(Comparator.comparingLong((Run r) -> r.parseMs).reversed().thenComparing(r -> r.log));
+    s.slowest.addAll(ok.subList(0, Math.min(SLOWEST, ok.size())));
+    s.failures.sort(Comparator.comparing(r -> r.log));
+    return s;
+  }
+
+  private Run parseOne(ObjectMapper om, Path log, long bytes, int weight, File runDir) {
+    Run r = new Run();
+    r.log = log.getFileName().toString();
+    r.bytes = bytes;
+
+    long t0 = System.nanoTime();
+    try {
+      CompactParsedLog parsed = new SparkEventLogParser(1, exactBudgetMb(weight, bytes) << 20).parse(log);
+      RecommendationsEngine.enrich(parsed);
+      runDir.mkdirs();
+      om.writerWithDefaultPrettyPrinter().writeValue(new File(runDir, "parsed.json"), parsed);
+      om.writerWithDefaultPrettyPrinter().writeValue(new File(runDir, "utilization.json"), parsed.utilization);
+      ParsedLogSnapshot.write(parsed, new File(runDir, "parsed.bin").toPath());
+    } catch (Exception | OutOfMemoryError e) {
+      r.error = e.toString();
+      System.err.println("Failed: " + log + ": " + e);
+    }
+    r.parseMs = (System.nanoTime() - t0) / 1_000_000;
+    return r;
+  }
+
+  /**
+   * Heap reserved for a log of this size, including its exact-percentile buffer budget when that
+   * mode is on; never more than the whole budget, so any log can run alone.
+   */
+  int weightMb(long bytes) {
+    return (int) Math.min(budgetMb, baseWeightMb(bytes) + ceilMb(exactBudgetBytes));
+  }
+
+  /** The exact-percentile budget that fits in a reservation of {@code weightMb}; 0 when the mode is off. */
+  long exactBudgetMb(int weightMb, long bytes) {
+    if (exactBudgetBytes <= 0) return 0;
+    return Math.max(1, Math.min(ceilMb(exactBudgetBytes), weightMb - baseWeightMb(bytes)));
+  }
+
+  private static long baseWeightMb(long bytes) {
+    return BASE_WEIGHT_MB + bytes / BYTES_PER_WEIGHT_MB;
+  }
+
+  private static long ceilMb(long bytes) {
+    return (bytes + (1 << 20) - 1) >> 20;
+  }
+
+  /** Files and rolling eventlog_v2_* directories; hidden files and in-progress logs are skipped. */
+  private static List<Path> listLogs(Path dir) throws IOException {
+    List<Path> out = new ArrayList<>();
+    try (Stream<Path> s = Files.list(dir)) {
+      s.forEach(p -> {
+        String name = p.getFileName().toString();
+        if (name.startsWith(".") || name.endsWith(".inprogress")) return;
+        if (Files.isRegularFile(p) || (Files.isDirectory(p) && name.startsWith("eventlog_v2_"))) out.add(p);
+      });
+    }
+    return out;
+  }
+
+  private static long sizeOf(Path p) throws IOException {
+    if (!Files.isDirectory(p)) return Files.size(p);
+    long n = 0;
+    try (Stream<Path> s = Files.list(p)) {
+      for (Path f : (Iterable<Path>) s::iterator) if (Files.isRegularFile(f)) n += Files.size(f);
+    }
+    return n;
+  }
+
+  /** Virtual threads if available (looked up reflectively: the build targets Java 17). */
+  private static ExecutorService newExecutor(Summary s) {
+    try {
+      ExecutorService e = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      s.executor = "virtual";
+      return e;
+    } catch (ReflectiveOperationException e) {
+      int n = Runtime.getRuntime().availableProcessors();
+      s.executor = "fixed-" + n;
+      return Executors.newFixedThreadPool(n);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Splits a byte stream into '\n'-terminated lines without decoding them to Strings.
+ * A trailing '\r' is dropped, so CRLF logs behave like BufferedReader.readLine().
+ */
+final class ByteLineReader {
+  static final int DEFAULT_BUFFER = 1 << 20;
+
+  /** Receives one line as a byte slice; the slice is only valid for the duration of the call. */
+  interface LineSink {
+    void line(byte[] buf, int off, int len) throws IOException;
+  }
+
+  private ByteLineReader() {}
+
+  static void forEachLine(InputStream in, LineSink sink) throws IOException {
+    byte[] buf = new byte[DEFAULT_BUFFER];
+    int start = 0, end = 0;
+
+    while (true) {
+      if (end == buf.length) {
+        if (start > 0) {
+          System.arraycopy(buf, start, buf, 0, end - start);
+          end -= start;
+          start = 0;
+        } else {
+          buf = Arrays.copyOf(buf, buf.length * 2); // single line longer than the buffer
+        }
+      }
+
+      int n = in.read(buf, end, buf.length - end);
+      if (n < 0) break;
+
+      int scanFrom = end;
+      end += n;
+      for (int i = scanFrom; i < end; i++) {
+        if (buf[i] != '\n') continue;
+        emit(buf, start, i, sink);
+        start = i + 1;
+      }
+    }
+
+    if (end > start) emit(buf, start, end, sink);
+  }
+
+  /** Lines of an in-memory region, e.g. one line-aligned block handed over by another thread. */
+  static void forEachLine(byte[] buf, int off, int len, LineSink sink) throws IOException {
+    int start = off, end = off + len;
+    for (int i = off; i < end; i++) {
+      if (buf[i] != '\n') continue;
+      emit(buf, start, i, sink);
+      start = i + 1;
+    }
+    if (end > start) emit(buf, start, end, sink);
+  }
+
+  private static void emit(byte[] buf, int from, int to, LineSink sink) throws IOException {
+    if (to > from && buf[to - 1] == '\r') to--;
+    sink.line(buf, from, to - from);
+  }
+
+  /** Same whitespace set as String.isBlank() for the ASCII range. */
+  static boolean isBlank(byte[] buf, int off, int len) {
+    for (int i = off, end = off + len; i < end; i++) {
+      int b = buf[i] & 0xFF;
+      boolean ws = b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+      if (!ws) return false;
+    }
+    return true;
+  }
+}
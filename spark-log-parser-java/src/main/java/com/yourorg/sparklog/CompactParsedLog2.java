@@ -13,11 +13,26 @@ public class CompactParsedLog {
   public ExecutorSummary executors = new ExecutorSummary();
   public List<StageSummary> stages = new ArrayList<>();
 
+  // jobs with their critical path through the stage DAG, and the app's end-to-end one
+  public List<JobSummary> jobs = new ArrayList<>();
+  public CriticalPath criticalPath;
+
+  // DataFrame / SQL queries, with the work of the jobs they ran
+  public List<SqlExecution> sqlExecutions = new ArrayList<>();
+
+  // per-node task aggregates, and nodes running a stage's tasks slower than their peers
+  public List<NodeSummary> executorStats = new ArrayList<>();
+  public List<NodeSummary> hostStats = new ArrayList<>();
+  public List<BadNode> badNodes = new ArrayList<>();
+
   // NEW: driver-log rule metrics + correlation + insights
   public List<MatchRuleMetric> matchRules = new ArrayList<>();
   public List<RuleStageCorrelation> ruleStageCorrelations = new ArrayList<>();
   public RunInsights runInsights = new RunInsights();
 
+  // running tasks vs executor slots over the app's lifetime
+  public SlotOccupancy slotOccupancy;
+
   public UtilizationScore utilization;
 
   public static class ExecutorSummary {
@@ -39,6 +54,7 @@ public class CompactParsedLog {
 
     public Long durationMs;
     public long numTasks;
+    public List<Integer> parentIds = new ArrayList<>();
 
     public long executorRunTimeMs;
     public long gcTimeMs;
@@ -52,10 +68,114 @@ public class CompactParsedLog {
     public long maxTaskDurationMs;
     public double p50TaskDurationMs;
     public double p95TaskDurationMs;
+    public double p99TaskDurationMs;
+    public double p999TaskDurationMs;
     public double maxOverP50;
     public double stragglerPct;
   }
 
+  public static class NodeSummary {
+    public String id;
+    public String host; // executors only
+    public long tasks;
+    public long executorRunTimeMs;
+    public long gcTimeMs;
+    public long shuffleFetchWaitMs;
+    public double p50TaskDurationMs;
+    public double p95TaskDurationMs;
+    public long maxTaskDurationMs;
+  }
+
+  public static class BadNode {
+    public String kind; // "executor" or "host"
+    public String id;
+    public int stageId;
+    public int attemptId;
+    public long tasks;
+    public double geoMeanTaskDurationMs;
+    public double peerGeoMeanTaskDurationMs;
+    public double slowdown;
+    public double tStat;
+  }
+
+  public static class JobSummary {
+    public int jobId;
+    public Long submissionTimeMs;
+    public Long completionTimeMs;
+    public Long durationMs;
+    public String result;
+    public List<Integer> stageIds = new ArrayList<>();
+    public Long sqlExecutionId;
+    public CriticalPath criticalPath;
+  }
+
+  public static class SqlExecution {
+    public long executionId;
+    public String description; // truncated to 1000 chars
+    public Long startTimeMs;
+    public Long endTimeMs;
+    public Long durationMs;
+    public String errorMessage;
+    public List<Integer> jobIds = new ArrayList<>();
+    public List<Integer> stageIds = new ArrayList<>(); // stages that ran for it, skipped ones excluded
+
+    public long numTasks;
+    public long taskTimeMs; // summed task wall time: slot time the query kept busy
+    public long executorRunTimeMs;
+    public long gcTimeMs;
+    public long shuffleReadBytes;
+    public long shuffleWriteBytes;
+    public long spillMemBytes;
+    public long spillDiskBytes;
+
+    // plan operators that reported metrics, in plan-creation order
+    public List<SqlOperator> operators = new ArrayList<>();
+  }
+
+  public static class SqlOperator {
+    public String nodeName;
+    public String description;     // the operator's simpleString, truncated to 200 chars
+    public long timeMs;            // sum of its timing metrics
+    public Map<String, Long> metrics = new LinkedHashMap<>(); // timings in ms, sizes in bytes
+  }
+
+  public static class CriticalPath {
+    public long startMs;
+    public long endMs;
+    public long spanMs;
+    public long stageMs; // time inside stages on the path
+    public long gapMs;   // time between them: scheduling, driver work
+    public List<PathStage> stages = new ArrayList<>(); // first to last
+  }
+
+  public static class PathStage {
+    public int stageId;
+    public int attempts;
+    public String name;
+    public long startMs;
+    public long endMs;
+    public long durationMs;
+    public String via;          // how the previous path stage gates this one: "parent" or "sequence"; null for the first
+    public long gapBeforeMs;
+    public long potentialSavingMs; // end-to-end time saved if this stage took no time, before another branch takes over
+    public double pctOfSpan;
+  }
+
+  public static class SlotOccupancy {
+    public long intervalMs;
+    public double capacitySlotSeconds; // executors x cores over time
+    public double busySlotSeconds;     // task wall time
+    public double idleSlotSeconds;     // capacity not covered by tasks, summed per interval
+    public List<SlotInterval> series = new ArrayList<>();
+  }
+
+  public static class SlotInterval {
+    public long startMs;
+    public double runningTasks; // average over the interval
+    public double slots;        // average over the interval
+    public double occupancy;    // runningTasks / slots; 0 when there are no slots
+  }
+
   // NEW: overall run insights + recs
   public static class RunInsights {
     public long totalTasks;
@@ -0,0 +1,181 @@
+package com.yourorg.sparklog;
+
+import java.util.*;
+
+/**
+ * Critical path through the stage DAG, per job and for the whole app.
+ *
+ * Works backwards from the stage that finished last: each step moves to whatever gated the
+ * current stage's start, i.e. its parent that finished last. A stage with no timed parent ends
+ * a job's path; at app level the path continues to the stage that finished last before it
+ * started (the driver runs one action after another). Stages are nodes by stage id; retried
+ * attempts are folded into one span from the first submission to the last completion.
+ *
+ * {@code potentialSavingMs} is how much the run would get shorter if a path stage took no time,
+ * until another branch becomes the critical one: the stage's duration, capped by the slack to
+ * the latest off-path competitor at this step and every step after it. Off-path stages are
+ * taken as fixed in time, so this is a lower bound.
+ */
+public class CriticalPathAnalyzer {
+
+  public static void analyze(CompactParsedLog run) {
+    Map<Integer, Node> nodes = nodes(run.stages);
+    if (nodes.isEmpty()) return;
+
+    List<Node> byEnd = new ArrayList<>(nodes.values());
+    byEnd.sort(BY_END);
+
+    for (CompactParsedLog.JobSummary j : run.jobs) {
+      List<Node> scope = new ArrayList<>();
+      for (int id : j.stageIds) {
+        Node n = nodes.get(id);
+        // stages reused from an earlier job are listed but ran before this one
+        if (n != null && (j.submissionTimeMs == null || n.start >= j.submissionTimeMs)) scope.add(n);
+      }
+      if (scope.isEmpty()) continue;
+      scope.sort(BY_END);
+      Map<Integer, Node> inScope = new HashMap<>();
+      for (Node n : scope) inScope.put(n.id, n);
+      j.criticalPath = path(scope, inScope, false);
+    }
+    run.criticalPath = path(byEnd, nodes, true);
+  }
+
+  private static final Comparator<Node> BY_END = Comparator.comparingLong((Node n) -> n.end).thenComparingInt(n -> n.id);
+
+  /** One stage id: all attempts with both times, spanned. */
+  private static final class Node {
+    final int id;
+    long start = Long.MAX_VALUE, end = Long.MIN_VALUE;
+    int attempts;
+    String name;
+    List<Integer> parents = List.of();
+
+    Node(int id) { this.id = id; }
+  }
+
+  private static Map<Integer, Node> nodes(List<CompactParsedLog.StageSummary> stages) {
+    Map<Integer, Node> m = new HashMap<>();
+    for (CompactParsedLog.StageSummary s : stages) {
+      if (s.submissionTimeMs == null || s.completionTimeMs == null || s.completionTimeMs < s.submissionTimeMs) continue;
+      Node n = m.computeIfAbsent(s.stageId, Node::new);
+      n.start = Math.min(n.start, s.submissionTimeMs);
+      n.end = Math.max(n.end, s.completionTimeMs);
+      n.attempts++;
+      n.name = s.name; // stages are sorted by attempt: the last one wins
+      if (n.parents.isEmpty() && s.parentIds != null) n.parents = s.parentIds;
+    }
+    return m;
+  }
+
+  /**
+   * @param byEnd    the nodes in scope, sorted by {@link #BY_END}
+   * @param inScope  the same nodes by id
+   * @param sequence whether a stage without a timed parent continues to the one that ended before it
+   */
+  private static CompactParsedLog.CriticalPath path(List<Node> byEnd, Map<Integer, Node> inScope, boolean sequence) {
+    Node sink = byEnd.get(byEnd.size() - 1);
+
+    List<Node> chain = new ArrayList<>(); // sink first
+    List<CompactParsedLog.PathStage> rev = new ArrayList<>();
+    Set<Integer> onPath = new HashSet<>();
+    for (Node cur = sink; cur != null; ) {
+      CompactParsedLog.PathStage ps = stage(cur);
+      chain.add(cur);
+      rev.add(ps);
+      onPath.add(cur.id);
+
+      // what gated cur: the parent that finished last, else (app level) the stage that finished last before it
+      Node pred = null;
+      for (int pid : cur.parents) {
+        Node p = inScope.get(pid);
+        if (gates(p, cur) && (pred == null || BY_END.compare(p, pred) > 0)) pred = p;
+      }
+      if (pred != null) {
+        ps.via = "parent";
+      } else if (sequence) {
+        int i = lastEndingBy(byEnd, cur.start);
+        while (i >= 0 && byEnd.get(i).start >= cur.start) i--;
+        pred = i >= 0 ? byEnd.get(i) : null;
+        if (pred != null) ps.via = "sequence";
+      }
+      if (pred != null) ps.gapBeforeMs = Math.max(0, cur.start - pred.end);
+      cur = pred;
+    }
+
+    // Shrinking a path stage moves every later path stage earlier, until an off-path stage
+    // that it overtakes (a competing parent, or the previous action's last stage) gates instead.
+    long[] offPathEnd = offPathEnds(byEnd, onPath);
+    long last = offPathEnd[byEnd.size() - 1];
+    long bound = last != Long.MIN_VALUE ? sink.end - last : Long.MAX_VALUE;
+    for (int i = 0; i < chain.size(); i++) {
+      Node cur = chain.get(i);
+      CompactParsedLog.PathStage ps = rev.get(i);
+      ps.potentialSavingMs = Math.max(0, Math.min(ps.durationMs, bound));
+      if (i + 1 == chain.size()) break;
+
+      Node pred = chain.get(i + 1);
+      long competitor = Long.MIN_VALUE;
+      if ("parent".equals(ps.via)) {
+        for (int pid : cur.parents) {
+          Node p = inScope.get(pid);
+          if (gates(p, cur) && !onPath.contains(p.id)) competitor = Math.max(competitor, p.end);
+        }
+      } else {
+        int j = lastEndingBy(byEnd, cur.start);
+        if (j >= 0) competitor = offPathEnd[j];
+      }
+      if (competitor != Long.MIN_VALUE) bound = Math.min(bound, pred.end - competitor);
+    }
+    Collections.reverse(rev);
+
+    CompactParsedLog.CriticalPath cp = new CompactParsedLog.CriticalPath();
+    cp.startMs = rev.get(0).startMs;
+    cp.endMs = sink.end;
+    cp.spanMs = cp.endMs - cp.startMs;
+    for (CompactParsedLog.PathStage ps : rev) {
+      cp.stageMs += ps.durationMs;
+      cp.gapMs += ps.gapBeforeMs;
+      ps.pctOfSpan = cp.spanMs > 0 ? 100.0 * ps.durationMs / cp.spanMs : 0.0;
+    }
+    cp.stages = rev;
+    return cp;
+  }
+
+  private static boolean gates(Node parent, Node child) {
+    return parent != null && parent.end <= child.end && parent.start < child.start;
+  }
+
+  /** For each index i, the end of the latest node at or before i that is not on the path; MIN_VALUE if none. */
+  private static long[] offPathEnds(List<Node> byEnd, Set<Integer> onPath) {
+    long[] a = new long[byEnd.size()];
+    long latest = Long.MIN_VALUE;
+    for (int i = 0; i < a.length; i++) {
+      if (!onPath.contains(byEnd.get(i).id)) latest = byEnd.get(i).end;
+      a[i] = latest;
+    }
+    return a;
+  }
+
+  private static CompactParsedLog.PathStage stage(Node n) {
+    CompactParsedLog.PathStage ps = new CompactParsedLog.PathStage();
+    ps.stageId = n.id;
+    ps.attempts = n.attempts;
+    ps.name = n.name;
+    ps.startMs = n.start;
+    ps.endMs = n.end;
+    ps.durationMs = n.end - n.start;
+    return ps;
+  }
+
+  /** Index of the last node ending at or before {@code t}, or -1. */
+  private static int lastEndingBy(List<Node> byEnd, long t) {
+    int lo = 0, hi = byEnd.size();
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (byEnd.get(mid).end <= t) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo - 1;
+  }
+}
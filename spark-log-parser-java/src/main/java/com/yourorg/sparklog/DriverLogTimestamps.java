@@ -0,0 +1,96 @@
+package com.yourorg.sparklog;
+
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Decodes {@code dd/MM/yy HH:mm:ss} driver-log timestamps in one zone to epoch millis, giving
+ * exactly what {@code LocalDateTime.parse(s, ofPattern("dd/MM/yy HH:mm:ss")).atZone(zone)} gives.
+ *
+ * Meant for any parser of driver-log lines with this prefix: create one per zone and call
+ * {@link #decode} with the offset of the timestamp in each line. Local times in a DST gap move
+ * forward by the gap and times in an overlap take the earlier offset, as {@code atZone} does.
+ * Text that is not {@code dd/MM/yy HH:mm:ss} gives {@link #NONE}.
+ *
+ * The digits are read in place. Lines come in bursts within the same hour, so the epoch millis
+ * of the current local hour are cached and a hit is one multiply-add. An hour is only cached
+ * when the zone has one offset for all of it: hours in or next to a DST gap or overlap, and
+ * anything the formatter's SMART resolver would adjust (31/04, 24:00:00) or reject, take the
+ * slow path through java.time. Not thread-safe: use one per thread.
+ */
+public final class DriverLogTimestamps {
+  /** Length of {@code dd/MM/yy HH:mm:ss}. */
+  public static final int LENGTH = 17;
+  /** Returned for text that is not a valid timestamp. */
+  public static final long NONE = Long.MIN_VALUE;
+
+  private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd/MM/yy HH:mm:ss");
+  private static final int[] DAYS_IN_MONTH = {0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+  private final ZoneId zone;
+  private final ZoneRules rules;
+
+  private int hourKey = -1;      // yyMMddHH of the cached hour
+  private long hourMs;           // epoch millis of its start, if cacheable
+  private boolean hourCacheable;
+
+  public DriverLogTimestamps(ZoneId zone) {
+    this.zone = zone;
+    this.rules = zone.getRules();
+  }
+
+  /** The timestamp at {@code s[off, off + LENGTH)} in epoch millis, or {@link #NONE}. */
+  public long decode(CharSequence s, int off) {
+    if (s.length() - off < LENGTH || s.charAt(off + 2) != '/' || s.charAt(off + 5) != '/' || s.charAt(off + 8) != ' '
+        || s.charAt(off + 11) != ':' || s.charAt(off + 14) != ':') return NONE;
+    int dd = twoDigits(s, off), mm = twoDigits(s, off + 3), yy = twoDigits(s, off + 6);
+    int hh = twoDigits(s, off + 9), mi = twoDigits(s, off + 12), ss = twoDigits(s, off + 15);
+    if ((dd | mm | yy | hh | mi | ss) < 0) return NONE;
+
+    if (mm < 1 || mm > 12 || dd < 1 || dd > daysInMonth(2000 + yy, mm) || hh > 23 || mi > 59 || ss > 59) {
+      return slow(s, off);
+    }
+    int key = ((yy * 100 + mm) * 100 + dd) * 100 + hh;
+    if (key != hourKey) cacheHour(key, LocalDateTime.of(2000 + yy, mm, dd, hh, 0));
+    if (!hourCacheable) return LocalDateTime.of(2000 + yy, mm, dd, hh, mi, ss).atZone(zone).toInstant().toEpochMilli();
+    return hourMs + (mi * 60L + ss) * 1000L;
+  }
+
+  /** Caches the start of {@code hour} if every local time in it has the same single offset. */
+  private void cacheHour(int key, LocalDateTime hour) {
+    hourKey = key;
+    hourCacheable = false;
+    ZoneOffset offset;
+    if (rules.isFixedOffset()) {
+      offset = rules.getOffset(Instant.EPOCH);
+    } else {
+      var offsets = rules.getValidOffsets(hour);
+      if (offsets.size() != 1) return;
+      offset = offsets.get(0);
+      ZoneOffsetTransition next = rules.nextTransition(hour.toInstant(offset));
+      if (next != null && next.toEpochSecond() < hour.toEpochSecond(offset) + 3600) return;
+    }
+    hourMs = hour.toEpochSecond(offset) * 1000L;
+    hourCacheable = true;
+  }
+
+  /** What the formatter does with out-of-range fields: adjust them (SMART) or fail. */
+  private long slow(CharSequence s, int off) {
+    try {
+      return LocalDateTime.parse(s.subSequence(off, off + LENGTH), FMT).atZone(zone).toInstant().toEpochMilli();
+    } catch (Exception ignored) {
+      return NONE;
+    }
+  }
+
+  private static int twoDigits(CharSequence s, int i) {
+    int a = s.charAt(i) - '0', b = s.charAt(i + 1) - '0';
+    return (a | b) >= 0 && a <= 9 && b <= 9 ? a * 10 + b : -1;
+  }
+
+  private static int daysInMonth(int year, int month) {
+    return month == 2 && Year.isLeap(year) ? 29 : DAYS_IN_MONTH[month];
+  }
+}
@@ -0,0 +1,177 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch for positive durations (log-bucket histogram, DDSketch style).
+ *
+ * The first {@link #EXACT_LIMIT} values are kept as-is, so small stages get exact quantiles.
+ * Past that, values are counted in buckets (gamma^(i-1), gamma^i] with
+ * gamma = (1 + a) / (1 - a), a = {@link #RELATIVE_ACCURACY}. Error bounds:
+ * <ul>
+ *   <li>count, min and max are always exact;</li>
+ *   <li>a quantile estimate is within 1% (relative) of the true value at that rank;</li>
+ *   <li>{@link #countAbove} may misplace only values in the single bucket holding the threshold.</li>
+ * </ul>
+ * Buckets are a dense array over the observed index range, so size grows with the spread of
+ * the durations (about 1,050 buckets from 1 ms to 10^9 ms), not with the task count. Merging
+ * adds bucket counts, so the result does not depend on how the input was split.
+ */
+final class DurationSketch {
+  static final double RELATIVE_ACCURACY = 0.01;
+  static final int EXACT_LIMIT = 128;
+
+  private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+
+  private long[] exact = new long[8]; // null once switched to buckets
+  private int exactSize = 0;
+
+  private long[] counts;
+  private int offset; // bucket index of counts[0]
+
+  private long n = 0;
+  private long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+
+  void add(long v) {
+    n++;
+    if (v < min) min = v;
+    if (v > max) max = v;
+
+    if (exact != null) {
+      if (exactSize < EXACT_LIMIT) {
+        if (exactSize == exact.length) exact = Arrays.copyOf(exact, exactSize * 2);
+        exact[exactSize++] = v;
+        return;
+      }
+      toBuckets();
+    }
+    addToBucket(index(v), 1);
+  }
+
+  void mergeFrom(DurationSketch o) {
+    if (o.n == 0) return;
+    n += o.n;
+    min = Math.min(min, o.min);
+    max = Math.max(max, o.max);
+
+    if (exact != null && o.exact != null && exactSize + o.exactSize <= EXACT_LIMIT) {
+      if (exactSize + o.exactSize > exact.length) exact = Arrays.copyOf(exact, Math.min(EXACT_LIMIT, 2 * (exactSize + o.exactSize)));
+      System.arraycopy(o.exact, 0, exact, exactSize, o.exactSize);
+      exactSize += o.exactSize;
+      return;
+    }
+
+    if (exact != null) toBuckets();
+    if (o.exact != null) {
+      for (int i = 0; i < o.exactSize; i++) addToBucket(index(o.exact[i]), 1);
+    } else {
+      for (int i = 0; i < o.counts.length; i++) if (o.counts[i] != 0) addToBucket(o.offset + i, o.counts[i]);
+    }
+  }
+
+  long count() { return n; }
+
+  long max() { return n == 0 ? 0 : max; }
+
+  /** Value at rank floor(q * (n - 1)) of the sorted input; 0 when empty. */
+  double quantile(double q) {
+    if (n == 0) return 0;
+    long rank = (long) Math.floor(q * (n - 1));
+
+    if (exact != null) {
+      Arrays.sort(exact, 0, exactSize);
+      return exact[(int) rank];
+    }
+    if (rank == n - 1) return max;
+
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen > rank) return Math.max(min, Math.min(max, value(offset + i)));
+    }
+    return max;
+  }
+
+  /** Number of values strictly greater than {@code threshold}. */
+  long countAbove(double threshold) {
+    long c = 0;
+    if (exact != null) {
+      for (int i = 0; i < exactSize; i++) if (exact[i] > threshold) c++;
+      return c;
+    }
+    for (int i = 0; i < counts.length; i++) if (counts[i] != 0 && value(offset + i) > threshold) c += counts[i];
+    return c;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeLong(n);
+    out.writeLong(min);
+    out.writeLong(max);
+    out.writeBoolean(exact != null);
+    if (exact != null) {
+      out.writeInt(exactSize);
+      for (int i = 0; i < exactSize; i++) out.writeLong(exact[i]);
+      return;
+    }
+    out.writeInt(offset);
+    out.writeInt(counts.length);
+    for (long c : counts) out.writeLong(c);
+  }
+
+  /** Replaces this sketch's contents with one written by {@link #write}. */
+  void read(DataInput in) throws IOException {
+    n = in.readLong();
+    min = in.readLong();
+    max = in.readLong();
+    if (in.readBoolean()) {
+      exactSize = in.readInt();
+      exact = new long[Math.max(8, exactSize)];
+      for (int i = 0; i < exactSize; i++) exact[i] = in.readLong();
+      counts = null;
+      return;
+    }
+    exact = null;
+    exactSize = 0;
+    offset = in.readInt();
+    counts = new long[in.readInt()];
+    for (int i = 0; i < counts.length; i++) counts[i] = in.readLong();
+  }
+
+  // ---------- buckets ----------
+
+  private void toBuckets() {
+    long[] v = exact;
+    int size = exactSize;
+    exact = null;
+    exactSize = 0;
+    for (int i = 0; i < size; i++) addToBucket(index(v[i]), 1);
+  }
+
+  private static int index(long v) {
+    return v <= 1 ? 0 : (int) Math.ceil(Math.log(v) / LOG_GAMMA);
+  }
+
+  /** Representative value of bucket i, within RELATIVE_ACCURACY of anything it holds. */
+  private static double value(int i) {
+    return 2 * Math.pow(GAMMA, i) / (GAMMA + 1);
+  }
+
+  private void addToBucket(int idx, long c) {
+    if (counts == null) {
+      counts = new long[16];
+      offset = idx - 8;
+    } else if (idx < offset || idx >= offset + counts.length) {
+      int lo = Math.min(offset, idx);
+      int hi = Math.max(offset + counts.length - 1, idx);
+      int len = Math.max(hi - lo + 1, counts.length * 2);
+      int newOffset = idx < offset ? hi - len + 1 : lo;
+      long[] grown = new long[len];
+      System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+      counts = grown;
+      offset = newOffset;
+    }
+    counts[idx - offset] += c;
+  }
+}
@@ -0,0 +1,308 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Exact task durations under a memory budget, for the opt-in exact-percentile mode.
+ *
+ * Durations are buffered per stage in plain long[]s. Half of the budget is split evenly between
+ * the parse workers: a worker whose buffers outgrow its share sorts them and writes them as runs
+ * (delta varints) into one temp file, one run per stage. The other half holds the buffers of
+ * workers that have finished ({@link #finish}): a finished worker whose buffers do not fit there
+ * spills them all, as does the merged state. At finalize each stage's in-memory buffers and runs
+ * are k-way merged in a single pass that yields the exact quantiles and the straggler count; a
+ * stage with more than {@link #MAX_FAN_IN} runs has them merged into fewer, longer runs first so
+ * only that many spill files are open at once. Temp files are removed on {@link #close()}.
+ */
+final class DurationSpool implements Closeable {
+  /** Quantiles reported by {@link #summarize}, in this order. */
+  static final double[] QUANTILES = { 0.50, 0.95, 0.99, 0.999 };
+
+  /** Runs read at once by one merge. */
+  static final int MAX_FAN_IN = 64;
+
+  private static final long MIN_WORKER_SHARE = 1 << 20;
+
+  private final long workerShare;
+  private final long finishedBudget;
+  private final AtomicLong finishedBytes = new AtomicLong();
+  private final AtomicInteger spillFiles = new AtomicInteger();
+  private Path dir;
+
+  /** @param workers parse workers running at once; each gets an equal share of half the budget */
+  DurationSpool(long budgetBytes, int workers) {
+    this.finishedBudget = budgetBytes / 2;
+    this.workerShare = Math.max(MIN_WORKER_SHARE, budgetBytes / 2 / Math.max(1, workers));
+  }
+
+  /** A sorted run of {@code count} durations at {@code offset} of a spill file. */
+  record Run(Path file, long offset, int count) {}
+
+  /** Bytes buffered by one parse worker that it has not spilled or handed over yet. */
+  static final class Worker {
+    private long bytes;
+  }
+
+  /** Durations of one stage seen by one worker (after the merge: by all of them). */
+  static final class Values {
+    private long[] buf = new long[8];
+    private int size;
+    private long bytes; // growth of buf plus merged buffers: what spilling would release
+    private final List<long[]> merged = new ArrayList<>(); // buffers of other workers, exact length
+    private final List<Run> runs = new ArrayList<>();
+
+    long count() {
+      long n = size;
+      for (long[] m : merged) n += m.length;
+      for (Run r : runs) n += r.count;
+      return n;
+    }
+
+    void mergeFrom(Values o) {
+      if (o.size > 0) merged.add(o.size == o.buf.length ? o.buf : Arrays.copyOf(o.buf, o.size));
+      merged.addAll(o.merged);
+      runs.addAll(o.runs);
+      bytes += o.bytes;
+    }
+  }
+
+  /** Buffers one duration; true once the worker is over its share and should {@link #spill}. */
+  boolean add(Worker w, Values v, long duration) {
+    boolean over = false;
+    if (v.size == v.buf.length) {
+      long grow = 8L * v.buf.length;
+      v.bytes += grow;
+      over = (w.bytes += grow) > workerShare;
+      v.buf = Arrays.copyOf(v.buf, v.buf.length * 2);
+    }
+    v.buf[v.size++] = duration;
+    return over;
+  }
+
+  /** Spills a live worker's buffers. */
+  void spill(Worker w, Collection<Values> values) throws IOException {
+    w.bytes -= spill(values);
+  }
+
+  /**
+   * Hands a worker's buffers over to the finished half of the budget, spilling them if they do
+   * not fit. Called again on the merged state; calling it twice is harmless.
+   */
+  void finish(Worker w, Collection<Values> values) throws IOException {
+    long held = finishedBytes.addAndGet(w.bytes);
+    w.bytes = 0;
+    if (held > finishedBudget) finishedBytes.addAndGet(-spill(values));
+  }
+
+  /** Writes every non-empty buffer to a new spill file and releases them; returns the bytes released. */
+  private long spill(Collection<Values> values) throws IOException {
+    Path file = dir().resolve("spill-" + spillFiles.getAndIncrement() + ".bin");
+    long released = 0;
+    try (CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+      for (Values v : values) {
+        if (v.size == 0 && v.merged.isEmpty()) continue;
+        List<Cursor> in = new ArrayList<>();
+        if (v.size > 0) {
+          Arrays.sort(v.buf, 0, v.size);
+          in.add(new ArrayCursor(v.buf, v.size));
+        }
+        for (long[] m : v.merged) {
+          Arrays.sort(m);
+          in.add(new ArrayCursor(m, m.length));
+        }
+        v.runs.add(writeRun(out, file, in));
+
+        released += v.bytes;
+        v.bytes = 0;
+        v.buf = new long[8];
+        v.size = 0;
+        v.merged.clear();
+      }
+    }
+    return released;
+  }
+
+  /** Merges sorted inputs into one run at the current end of {@code out}. */
+  private static Run writeRun(CountingOutputStream out, Path file, List<Cursor> in) throws IOException {
+    long offset = out.count;
+    int count = 0;
+    long prev = 0;
+    PriorityQueue<Cursor> heap = new PriorityQueue<>(Comparator.comparingLong(c -> c.head));
+    for (Cursor c : in) if (c.next()) heap.add(c);
+    while (!heap.isEmpty()) {
+      Cursor c = heap.poll();
+      writeVarLong(out, c.head - prev);
+      prev = c.head;
+      count++;
+      if (c.next()) heap.add(c);
+    }
+    return new Run(file, offset, count);
+  }
+
+  /** Merges runs {@link #MAX_FAN_IN} at a time until at most that many are left. */
+  private void compact(Values v) throws IOException {
+    while (v.runs.size() > MAX_FAN_IN) {
+      Path file = dir().resolve("spill-" + spillFiles.getAndIncrement() + ".bin");
+      List<Run> next = new ArrayList<>();
+      try (CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+        for (int i = 0; i < v.runs.size(); i += MAX_FAN_IN) {
+          List<Cursor> in = new ArrayList<>();
+          try {
+            for (Run r : v.runs.subList(i, Math.min(v.runs.size(), i + MAX_FAN_IN))) in.add(new RunCursor(r));
+            next.add(writeRun(out, file, in));
+          } finally {
+            for (Cursor c : in) c.close();
+          }
+        }
+      }
+      v.runs.clear();
+      v.runs.addAll(next);
+    }
+  }
+
+  /**
+   * One merge pass over all of a stage's durations.
+   *
+   * @param out receives the values at rank floor(q * (n - 1)) for each of {@link #QUANTILES},
+   *            then the max
+   * @return number of durations strictly greater than 3 x p50
+   */
+  long summarize(Values v, long[] out) throws IOException {
+    long n = v.count();
+    Arrays.fill(out, 0);
+    if (n == 0) return 0;
+    compact(v);
+
+    long[] ranks = new long[QUANTILES.length];
+    for (int i = 0; i < ranks.length; i++) ranks[i] = (long) Math.floor(QUANTILES[i] * (n - 1));
+
+    List<Cursor> cursors = new ArrayList<>();
+    try {
+      if (v.size > 0) {
+        Arrays.sort(v.buf, 0, v.size);
+        cursors.add(new ArrayCursor(v.buf, v.size));
+      }
+      for (long[] m : v.merged) {
+        Arrays.sort(m);
+        cursors.add(new ArrayCursor(m, m.length));
+      }
+      for (Run r : v.runs) cursors.add(new RunCursor(r));
+
+      PriorityQueue<Cursor> heap = new PriorityQueue<>(Comparator.comparingLong(c -> c.head));
+      for (Cursor c : cursors) if (c.next()) heap.add(c);
+
+      double thr = Double.MAX_VALUE;
+      long stragglers = 0;
+      int q = 0;
+      for (long i = 0; i < n; i++) {
+        Cursor c = heap.poll();
+        long x = c.head;
+        if (c.next()) heap.add(c);
+
+        while (q < ranks.length && ranks[q] == i) {
+          out[q++] = x;
+          if (q == 1) thr = x * 3.0; // p50 is known before any value above it
+        }
+        if (x > thr) stragglers++;
+        if (i == n - 1) out[ranks.length] = x;
+      }
+      return stragglers;
+    } finally {
+      for (Cursor c : cursors) c.close();
+    }
+  }
+
+  @Override public void close() throws IOException {
+    if (dir == null) return;
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+      for (Path p : ds) Files.deleteIfExists(p);
+    }
+    Files.deleteIfExists(dir);
+    dir = null;
+  }
+
+  private synchronized Path dir() throws IOException {
+    if (dir == null) dir = Files.createTempDirectory("sparklog-durations");
+    return dir;
+  }
+
+  // ---------- merge cursors ----------
+
+  private abstract static class Cursor implements Closeable {
+    long head;
+
+    abstract boolean next() throws IOException;
+
+    @Override public void close() throws IOException {}
+  }
+
+  private static final class ArrayCursor extends Cursor {
+    private final long[] a;
+    private final int n;
+    private int i;
+
+    ArrayCursor(long[] a, int n) { this.a = a; this.n = n; }
+
+    @Override boolean next() {
+      if (i == n) return false;
+      head = a[i++];
+      return true;
+    }
+  }
+
+  private static final class RunCursor extends Cursor {
+    private final InputStream in;
+    private int left;
+
+    RunCursor(Run r) throws IOException {
+      InputStream raw = Files.newInputStream(r.file);
+      raw.skipNBytes(r.offset);
+      in = new BufferedInputStream(raw, 1 << 14);
+      left = r.count;
+    }
+
+    @Override boolean next() throws IOException {
+      if (left == 0) return false;
+      left--;
+      head += readVarLong(in);
+      return true;
+    }
+
+    @Override public void close() throws IOException { in.close(); }
+  }
+
+  // ---------- encoding ----------
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) { super(out); }
+
+    @Override public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+  }
+
+  private static void writeVarLong(OutputStream out, long v) throws IOException {
+    while ((v & ~0x7FL) != 0) {
+      out.write((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.write((int) v);
+  }
+
+  private static long readVarLong(InputStream in) throws IOException {
+    long v = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.read();
+      if (b < 0) throw new EOFException("truncated duration spill run");
+      v |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) return v;
+    }
+    throw new IOException("malformed varint in duration spill run");
+  }
+}
@@ -0,0 +1,83 @@
+package com.yourorg.sparklog;
+
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import java.io.*;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import org.xerial.snappy.SnappyInputStream;
+
+/**
+ * Compression of an event log file, from {@code spark.eventLog.compression.codec}.
+ *
+ * Detected from the file extension Spark appends (the codec short name, before any
+ * {@code .inprogress}), falling back to the stream's magic bytes. Decoding wraps the file
+ * stream directly with the same stream classes Spark writes with, so nothing is staged on disk.
+ */
+enum EventLogCodec {
+  NONE, GZIP, LZ4, ZSTD, SNAPPY;
+
+  private static final int IN_BUFFER = 1 << 20;
+
+  private static final byte[] GZIP_MAGIC = { 0x1f, (byte) 0x8b };
+  private static final byte[] ZSTD_MAGIC = { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd };
+  private static final byte[] LZ4_MAGIC = { 'L', 'Z', '4', 'B', 'l', 'o', 'c', 'k' };
+  private static final byte[] SNAPPY_MAGIC = { (byte) 0x82, 'S', 'N', 'A', 'P', 'P', 'Y', 0 };
+
+  static EventLogCodec detect(Path file) throws IOException {
+    String name = file.getFileName().toString();
+    if (name.endsWith(".inprogress")) name = name.substring(0, name.length() - ".inprogress".length());
+
+    int dot = name.lastIndexOf('.');
+    String ext = dot >= 0 ? name.substring(dot + 1) : "";
+    switch (ext) {
+      case "gz": return GZIP;
+      case "lz4": return LZ4;
+      case "zstd", "zst": return ZSTD;
+      case "snappy": return SNAPPY;
+      case "lzf": throw new IOException("Unsupported event log codec lzf: " + file);
+      default: return sniff(file);
+    }
+  }
+
+  /** Opens the file and decodes it in-stream. */
+  InputStream open(Path file) throws IOException {
+    InputStream raw = Files.newInputStream(file);
+    try {
+      return wrap(this == NONE ? raw : new BufferedInputStream(raw, IN_BUFFER));
+    } catch (IOException | RuntimeException e) {
+      raw.close();
+      throw e;
+    }
+  }
+
+  InputStream wrap(InputStream in) throws IOException {
+    return switch (this) {
+      case NONE -> in;
+      case GZIP -> new GZIPInputStream(in, 1 << 16);
+      // Spark writes concatenated LZ4 block streams; keep reading past empty end blocks
+      case LZ4 -> new LZ4BlockInputStream(in, false);
+      // continuous: a truncated last frame (in-progress log) ends the stream instead of failing
+      case ZSTD -> new ZstdInputStreamNoFinalizer(in).setContinuous(true);
+      case SNAPPY -> new SnappyInputStream(in);
+    };
+  }
+
+  private static EventLogCodec sniff(Path file) throws IOException {
+    byte[] head = new byte[8];
+    int n;
+    try (InputStream in = Files.newInputStream(file)) {
+      n = in.readNBytes(head, 0, head.length);
+    }
+    if (startsWith(head, n, GZIP_MAGIC)) return GZIP;
+    if (startsWith(head, n, ZSTD_MAGIC)) return ZSTD;
+    if (startsWith(head, n, LZ4_MAGIC)) return LZ4;
+    if (startsWith(head, n, SNAPPY_MAGIC)) return SNAPPY;
+    return NONE;
+  }
+
+  private static boolean startsWith(byte[] head, int n, byte[] magic) {
+    return n >= magic.length && Arrays.equals(head, 0, magic.length, magic, 0, magic.length);
+  }
+}
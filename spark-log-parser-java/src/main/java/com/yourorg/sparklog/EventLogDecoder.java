@@ -0,0 +1,555 @@
+package com.yourorg.sparklog;
+
+import com.fasterxml.jackson.core.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Token-stream decoder for one event log line.
+ *
+ * Pulls only the fields the parser's handlers read into a {@link SparkEvent} and calls
+ * {@code skipChildren()} on everything else (Accumulables, Details, RDD Info, ...), so no
+ * JsonNode tree is built. Spark's JsonProtocol writes "Event" first, so lines for events
+ * nobody subscribes to are abandoned right after that field.
+ */
+final class EventLogDecoder {
+  private static final JsonFactory F = new JsonFactory();
+  static final int MAX_PLAN_STRING_CHARS = 200;
+  private static final char[] INTERNAL_PREFIX = "internal.".toCharArray();
+
+  /**
+   * Decodes one raw UTF-8 line.
+   * @return true if the line is a subscribed event; {@code e.type} is then set.
+   */
+  boolean decode(byte[] buf, int off, int len, SparkEvent e) throws IOException {
+    try (JsonParser p = F.createParser(buf, off, len)) {
+      return decode(p, e);
+    }
+  }
+
+  /**
+   * Decodes one line straight from a mapped window, for lines too long to copy out (SQL
+   * execution starts carry the whole physical plan). Jackson reads it through its own small
+   * buffer and skips unread string values without materializing them.
+   */
+  boolean decode(ByteBuffer window, int off, int len, SparkEvent e) throws IOException {
+    try (JsonParser p = F.createParser(new SliceInput(window, off, len))) {
+      return decode(p, e);
+    }
+  }
+
+  private static final class SliceInput extends InputStream {
+    private final ByteBuffer b;
+    private int pos;
+    private final int end;
+
+    SliceInput(ByteBuffer b, int off, int len) {
+      this.b = b;
+      this.pos = off;
+      this.end = off + len;
+    }
+
+    @Override public int read() {
+      return pos < end ? b.get(pos++) & 0xFF : -1;
+    }
+
+    @Override public int read(byte[] dst, int off, int len) {
+      if (pos >= end) return -1;
+      int n = Math.min(len, end - pos);
+      b.get(pos, dst, off, n);
+      pos += n;
+      return n;
+    }
+  }
+
+  private boolean decode(JsonParser p, SparkEvent e) throws IOException {
+    e.reset();
+    if (p.nextToken() != JsonToken.START_OBJECT) return false;
+
+    JsonToken t;
+    while ((t = p.nextToken()) == JsonToken.FIELD_NAME) {
+      String f = p.currentName();
+      t = p.nextToken();
+      switch (f) {
+        case "Event" -> {
+          e.type = eventType(p, t);
+          if (e.type == EventType.OTHER) return false;
+        }
+        case "Timestamp" -> {
+          e.hasTimestamp = t.isNumeric();
+          e.timestamp = e.hasTimestamp ? p.getValueAsLong() : 0L;
+        }
+        case "App ID" -> e.appId = text(p, t);
+        case "Spark Properties" -> readProperties(p, t, e);
+        case "Stage Info" -> readStageInfo(p, t, e);
+        case "Stage ID" -> {
+          e.hasStageId = t.isNumeric();
+          e.stageId = e.hasStageId ? p.getValueAsInt() : 0;
+        }
+        case "Stage Attempt ID" -> {
+          e.hasAttemptId = t.isNumeric();
+          e.attemptId = e.hasAttemptId ? p.getValueAsInt() : 0;
+        }
+        case "Job ID" -> {
+          e.hasJobId = t.isNumeric();
+          e.jobId = e.hasJobId ? p.getValueAsInt() : 0;
+        }
+        case "Submission Time" -> {
+          e.hasJobSubmission = t.isNumeric();
+          e.jobSubmissionTimeMs = e.hasJobSubmission ? p.getValueAsLong() : 0L;
+        }
+        case "Completion Time" -> {
+          e.hasJobCompletion = t.isNumeric();
+          e.jobCompletionTimeMs = e.hasJobCompletion ? p.getValueAsLong() : 0L;
+        }
+        case "Job Result" -> e.jobResult = jobResult(p, t);
+        case "Stage IDs" -> ints(p, t, e.jobStageIds);
+        case "Stage Infos" -> readJobStageInfos(p, t, e);
+        case "Properties" -> readJobProperties(p, t, e);
+        case "executionId" -> {
+          e.hasExecutionId = t.isNumeric();
+          e.executionId = e.hasExecutionId ? p.getValueAsLong() : 0L;
+        }
+        case "time" -> {
+          e.hasTime = t.isNumeric();
+          e.time = e.hasTime ? p.getValueAsLong() : 0L;
+        }
+        case "description" -> e.description = text(p, t);
+        case "sparkPlanInfo" -> {
+          e.planNodes = new ArrayList<>();
+          readPlan(p, t, e.planNodes);
+        }
+        case "sqlPlanMetrics" -> {
+          SparkEvent.PlanNode n = new SparkEvent.PlanNode();
+          n.nodeName = "AdaptiveSparkPlan";
+          readPlanMetrics(p, t, n);
+          e.planNodes = new ArrayList<>();
+          if (n.accumulatorIds.size > 0) e.planNodes.add(n);
+        }
+        case "accumUpdates" -> readDriverAccums(p, t, e);
+        case "errorMessage" -> e.errorMessage = text(p, t);
+        case "Task Info" -> readTaskInfo(p, t, e);
+        case "Task Metrics" -> readTaskMetrics(p, t, e);
+        default -> p.skipChildren();
+      }
+    }
+    return e.type != null;
+  }
+
+  private static EventType eventType(JsonParser p, JsonToken t) throws IOException {
+    if (t != JsonToken.VALUE_STRING) {
+      p.skipChildren();
+      return EventType.OTHER;
+    }
+    return EventType.of(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+  }
+
+  private static void readProperties(JsonParser p, JsonToken t, SparkEvent e) throws IOException {
+    e.sparkProperties.clear();
+    if (t != JsonToken.START_OBJECT) {
+      p.skipChildren();
+      return;
+    }
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String k = p.currentName();
+      JsonToken v = p.nextToken();
+      String s = switch (v) {
+        case VALUE_NULL -> "null";
+        case START_OBJECT, START_ARRAY -> { p.skipChildren(); yield ""; }
+        default -> p.getText();
+      };
+      e.sparkProperties.put(k, s);
+    }
+  }
+
+  /** Job/stage "Properties": only the SQL execution a job belongs to. */
+  private static void readJobProperties(JsonParser p, JsonToken t, SparkEvent e) throws IOException {
+    if (t != JsonToken.START_OBJECT) {
+      p.skipChildren();
+      return;
+    }
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String k = p.currentName();
+      JsonToken v = p.nextToken();
+      if (!"spark.sql.execution.id".equals(k) || v != JsonToken.VALUE_STRING) {
+        p.skipChildren();
+        continue;
+      }
+      try {
+        e.sqlExecutionId = Long.parseLong(p.getText().trim());
+        e.hasSqlExecutionId = true;
+      } catch (NumberFormatException ignored) {}
+    }
+  }
+
+  private static void readStageInfo(JsonParser p, JsonToken t, SparkEvent e) throws IOException {
+    e.hasStageInfo = true;
+    e.siStageId = e.siAttemptId = 0;
+    e.siStageIdIsNumber = e.siAttemptIdIsNumber = false;
+    e.siName = null;
+    e.siHasSubmission = e.siHasCompletion = e.siHasNumTasks = false;
+    e.siParentIds.clear();
+    if (t != JsonToken.START_OBJECT) {
+      p.skipChildren();
+      return;
+    }
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String f = p.currentName();
+      JsonToken v = p.nextToken();
+      switch (f) {
+        case "Stage ID" -> {
+          e.siStageIdIsNumber = v.isNumeric();
+          e.siStageId = intValue(p, v);
+        }
+        case "Stage Attempt ID" -> {
+          e.siAttemptIdIsNumber = v.isNumeric();
+          e.siAttemptId = intValue(p, v);
+        }
+        case "Stage Name" -> e.siName = text(p, v);
+        case "Submission Time" -> {
+          e.siHasSubmission = v.isNumeric();
+          if (e.siHasSubmission) e.siSubmissionTimeMs = p.getValueAsLong();
+        }
+        case "Completion Time" -> {
+          e.siHasCompletion = v.isNumeric();
+          if (e.siHasCompletion) e.siCompletionTimeMs = p.getValueAsLong();
+        }
+        case "Number of Tasks" -> {
+          e.siHasNumTasks = v.isNumeric();
+          if (e.siHasNumTasks) e.siNumTasks = p.getValueAsLong();
+        }
+        case "Parent IDs" -> ints(p, v, e.siParentIds);
+        default -> p.skipChildren();
+      }
+    }
+  }
+
+  /** Stage id and parent ids of each stage in a JobStart, skipped or not. */
+  private static void readJobStageInfos(JsonParser p, JsonToken t, SparkEvent e) throws IOException {
+    e.jobStageParents.clear();
+    if (t != JsonToken.START_ARRAY) {
+      p.skipChildren();
+      return;
+    }
+    SparkEvent.Ints out = e.jobStageParents;
+    JsonToken s;
+    while ((s = p.nextToken()) != JsonToken.END_ARRAY) {
+      if (s != JsonToken.START_OBJECT) {
+        p.skipChildren();
+        continue;
+      }
+      // stage id and parent count are filled in once the object is read
+      int mark = out.size;
+      out.add(-1);
+      out.add(0);
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String f = p.currentName();
+        JsonToken v = p.nextToken();
+        switch (f) {
+          case "Stage ID" -> out.a[mark] = v.isNumeric() ? p.getValueAsInt() : -1;
+          case "Parent IDs" -> {
+            int from = out.size;
+            ints(p, v, out);
+            out.a[mark + 1] += out.size - from;
+          }
+          default -> p.skipChildren();
+        }
+      }
+      if (out.a[mark] < 0) out.size = mark;
+    }
+  }
+
+  /** Plan tree, children first; only operators with summable metrics are kept. */
+  private static void readPlan(JsonParser p, JsonToken t, List<SparkEvent.PlanNode> out) throws IOException {
+    if (t != JsonToken.START_OBJECT) {
+      p.skipChildren();
+      return;
+    }
+    SparkEvent.PlanNode n = new SparkEvent.PlanNode();
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String f = p.currentName();
+      JsonToken v = p.nextToken();
+      switch (f) {
+        case "nodeName" -> n.nodeName = text(p, v);
+        case "simpleString" -> n.simpleString = prefix(p, v, MAX_PLAN_STRING_CHARS);
+        case "children" -> {
+          if (v != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            continue;
+          }
+          JsonToken c;
+          while ((c = p.nextToken()) != JsonToken.END_ARRAY) readPlan(p, c, out);
+        }
+        case "metrics" -> readPlanMetrics(p, v, n);
+        default -> p.skipChildren();
+      }
+    }
+    if (n.accumulatorIds.size > 0) out.add(n);
+  }
+
+  /** [{"name", "accumulatorId", "metricType"}]; averages are dropped since their updates do not add up. */
+  private static void readPlanMetrics(JsonParser p, JsonToken t, SparkEvent.PlanNode n) throws IOException {
+    if (t != JsonToken.START_ARRAY) {
+      p.skipChildren();
+      return;
+    }
+    JsonToken m;
+    while ((m = p.nextToken()) != JsonToken.END_ARRAY) {
+      if (m != JsonToken.START_OBJECT) {
+        p.skipChildren();
+        continue;
+      }
+      String name = null, type = null;
+      long id = -1;
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String f = p.currentName();
+        JsonToken v = p.nextToken();
+        switch (f) {
+          case "name" -> name = text(p, v);
+          case "accumulatorId" -> id = v.isNumeric() ? p.getValueAsLong() : -1;
+          case "metricType" -> type = text(p, v);
+          default -> p.skipChildren();
+        }
+      }
+      if (id < 0 || "average".equals(type)) continue;
+      n.metricNames.add(name);
+      n.metricTypes.add(type);
+      n.accumulatorIds.add(id);
+    }
+  }
+
+  /** [[accumulatorId, value], ...] */
+  private static void readDriverAccums(JsonParser p, JsonToken t, SparkEvent e) throws IOException {
+    if (t != JsonToken.START_ARRAY) {
+      p.skipChildren();
+      return;
+    }
+    JsonToken u;
+    while ((u = p.nextToken()) != JsonToken.END_ARRAY) {
+      if (u != JsonToken.START_ARRAY) {
+        p.skipChildren();
+        continue;
+      }
+      JsonToken a = p.nextToken();
+      if (a == JsonToken.END_ARRAY) continue;
+      long id = a.isNumeric() ? p.getValueAsLong() : -1;
+      JsonToken b = p.nextToken();
+      if (b == JsonToken.END_ARRAY) continue;
+      boolean ok = b.isNumeric();
+      long v = ok ? p.getValueAsLong() : 0L;
+      if (!ok) p.skipChildren();
+      while (p.nextToken() != JsonToken.END_ARRAY) p.skipChildren();
+      if (id >= 0 && ok) {
+        e.accumIds.add(id);
+        e.accumUpdates.add(v);
+      }
+    }
+  }
+
+  /**
+   * A task's accumulator deltas ("Update"), without internal task metrics (those are read from
+   * "Task Metrics"). Updates are usually numeric strings and are parsed from the token chars.
+   */
+  private static void readAccumulables(JsonParser p, JsonToken t, SparkEvent e) throws IOException {
+    if (t != JsonToken.START_ARRAY) {
+      p.skipChildren();
+      return;
+    }
+    JsonToken a;
+    while ((a = p.nextToken()) != JsonToken.END_ARRAY) {
+      if (a != JsonToken.START_OBJECT) {
+        p.skipChildren();
+        continue;
+      }
+      long id = -1, update = 0;
+      boolean hasUpdate = false, internal = false;
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String f = p.currentName();
+        JsonToken v = p.nextToken();
+        switch (f) {
+          case "ID" -> id = v.isNumeric() ? p.getValueAsLong() : -1;
+          case "Name" -> internal |= v == JsonToken.VALUE_STRING && startsWith(p, INTERNAL_PREFIX);
+          case "Update" -> {
+            if (internal) {
+              p.skipChildren();
+            } else if (v.isNumeric()) {
+              update = p.getValueAsLong();
+              hasUpdate = true;
+            } else if (v == JsonToken.VALUE_STRING) {
+              long x = parseLong(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+              hasUpdate = x != Long.MIN_VALUE;
+              update = hasUpdate ? x : 0;
+            } else {
+              p.skipChildren();
+            }
+          }
+          case "Internal" -> internal |= v == JsonToken.VALUE_TRUE;
+          default -> p.skipChildren();
+        }
+      }
+      if (id >= 0 && hasUpdate && !internal) {
+        e.accumIds.add(id);
+        e.accumUpdates.add(update);
+      }
+    }
+  }
+
+  private static boolean startsWith(JsonParser p, char[] prefix) throws IOException {
+    if (p.getTextLength() < prefix.length) return false;
+    char[] c = p.getTextCharacters();
+    int off = p.getTextOffset();
+    for (int i = 0; i < prefix.length; i++) if (c[off + i] != prefix[i]) return false;
+    return true;
+  }
+
+  /** Decimal long, optionally signed; {@code Long.MIN_VALUE} if the text is anything else. */
+  private static long parseLong(char[] c, int off, int len) {
+    if (len == 0 || len > 19) return Long.MIN_VALUE;
+    int i = off, end = off + len;
+    boolean neg = c[i] == '-';
+    if (neg && ++i == end) return Long.MIN_VALUE;
+    long v = 0;
+    for (; i < end; i++) {
+      int d = c[i] - '0';
+      if (d < 0 || d > 9) return Long.MIN_VALUE;
+      v = v * 10 + d;
+    }
+    return neg ? -v : v;
+  }
+
+  /** The first {@code max} chars of a string value, copied from the parser's buffer. */
+  private static String prefix(JsonParser p, JsonToken t, int max) throws IOException {
+    if (t != JsonToken.VALUE_STRING) return text(p, t);
+    return new String(p.getTextCharacters(), p.getTextOffset(), Math.min(max, p.getTextLength()));
+  }
+
+  private static String jobResult(JsonParser p, JsonToken t) throws IOException {
+    if (t != JsonToken.START_OBJECT) return text(p, t);
+    String r = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String f = p.currentName();
+      JsonToken v = p.nextToken();
+      if ("Result".equals(f)) r = text(p, v);
+      else p.skipChildren();
+    }
+    return r;
+  }
+
+  private static void readTaskInfo(JsonParser p, JsonToken t, SparkEvent e) throws IOException {
+    e.launchTimeMs = e.finishTimeMs = 0L;
+    e.executorId.clear();
+    e.host.clear();
+    if (t != JsonToken.START_OBJECT) {
+      p.skipChildren();
+      return;
+    }
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String f = p.currentName();
+      JsonToken v = p.nextToken();
+      switch (f) {
+        case "Launch Time" -> e.launchTimeMs = longValue(p, v);
+        case "Finish Time" -> e.finishTimeMs = longValue(p, v);
+        case "Executor ID" -> chars(p, v, e.executorId);
+        case "Accumulables" -> readAccumulables(p, v, e);
+        case "Host" -> chars(p, v, e.host);
+        default -> p.skipChildren();
+      }
+    }
+  }
+
+  private static void readTaskMetrics(JsonParser p, JsonToken t, SparkEvent e) throws IOException {
+    e.resetTaskMetrics();
+    e.hasTaskMetrics = t == JsonToken.START_OBJECT;
+    if (!e.hasTaskMetrics) {
+      p.skipChildren();
+      return;
+    }
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String f = p.currentName();
+      JsonToken v = p.nextToken();
+      switch (f) {
+        case "Executor Run Time" -> e.executorRunTimeMs = longValue(p, v);
+        case "JVM GC Time" -> e.gcTimeMs = longValue(p, v);
+        case "Memory Bytes Spilled" -> e.memoryBytesSpilled = longValue(p, v);
+        case "Disk Bytes Spilled" -> e.diskBytesSpilled = longValue(p, v);
+        case "Shuffle Read Metrics" -> {
+          e.remoteBytesRead = e.localBytesRead = e.fetchWaitTimeMs = 0L;
+          if (v != JsonToken.START_OBJECT) { p.skipChildren(); continue; }
+          while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String g = p.currentName();
+            JsonToken w = p.nextToken();
+            switch (g) {
+              case "Remote Bytes Read" -> e.remoteBytesRead = longValue(p, w);
+              case "Local Bytes Read" -> e.localBytesRead = longValue(p, w);
+              case "Fetch Wait Time" -> e.fetchWaitTimeMs = longValue(p, w);
+              default -> p.skipChildren();
+            }
+          }
+        }
+        case "Shuffle Write Metrics" -> {
+          e.shuffleBytesWritten = 0L;
+          if (v != JsonToken.START_OBJECT) { p.skipChildren(); continue; }
+          while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String g = p.currentName();
+            JsonToken w = p.nextToken();
+            if ("Shuffle Bytes Written".equals(g)) e.shuffleBytesWritten = longValue(p, w);
+            else p.skipChildren();
+          }
+        }
+        default -> p.skipChildren();
+      }
+    }
+  }
+
+  // ---------- scalar helpers (same semantics as the old JsonNode helpers) ----------
+
+  /** Like {@code JsonNode.asText()} for non-null values; null for JSON null. */
+  private static String text(JsonParser p, JsonToken t) throws IOException {
+    if (t == JsonToken.VALUE_NULL) return null;
+    if (t.isStructStart()) {
+      p.skipChildren();
+      return "";
+    }
+    return p.getText();
+  }
+
+  /** String scalars only, copied from the parser's buffer; anything else leaves {@code out} absent. */
+  private static void chars(JsonParser p, JsonToken t, SparkEvent.Chars out) throws IOException {
+    if (t != JsonToken.VALUE_STRING) {
+      p.skipChildren();
+      return;
+    }
+    out.set(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+  }
+
+  /** Appends the numeric elements of an array; anything else is skipped. */
+  private static void ints(JsonParser p, JsonToken t, SparkEvent.Ints out) throws IOException {
+    if (t != JsonToken.START_ARRAY) {
+      p.skipChildren();
+      return;
+    }
+    JsonToken v;
+    while ((v = p.nextToken()) != JsonToken.END_ARRAY) {
+      if (v.isNumeric()) out.add(p.getValueAsInt());
+      else p.skipChildren();
+    }
+  }
+
+  /** Numbers only; anything else is the default 0. */
+  private static long longValue(JsonParser p, JsonToken t) throws IOException {
+    if (t.isNumeric()) return p.getValueAsLong();
+    p.skipChildren();
+    return 0L;
+  }
+
+  /** Like {@code JsonNode.asInt()}: numbers, numeric strings and booleans coerce, else 0. */
+  private static int intValue(JsonParser p, JsonToken t) throws IOException {
+    if (t.isStructStart()) {
+      p.skipChildren();
+      return 0;
+    }
+    return p.getValueAsInt(0);
+  }
+}
@@ -0,0 +1,101 @@
+package com.yourorg.sparklog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Follows a growing uncompressed event log ({@code <appId>.inprogress}).
+ *
+ * Each {@link #poll} reads only the bytes appended since the last one and feeds complete lines
+ * into one live {@link ParseState}; a trailing partial line is held back until its newline
+ * arrives. When Spark renames the file to its final name at shutdown, the tailer continues on
+ * the renamed file from the same offset, flushes any unterminated last line and completes.
+ */
+final class EventLogTailer {
+  private static final String IN_PROGRESS = ".inprogress";
+  private static final int READ_BYTES = 4 << 20;
+
+  private final SparkEventLogParser parser = new SparkEventLogParser(1);
+  private final ParseState state = new ParseState(0);
+  private final Path finalFile;
+  private Path file;
+
+  private long offset = 0;
+  private byte[] buf = new byte[READ_BYTES];
+  private int pending = 0; // bytes of an unterminated line at the front of buf
+  private boolean completed = false;
+
+  EventLogTailer(Path file) throws IOException {
+    if (EventLogCodec.detect(file) != EventLogCodec.NONE) {
+      throw new IOException("Tail mode needs an uncompressed event log: " + file);
+    }
+    String name = file.getFileName().toString();
+    this.file = file;
+    this.finalFile = name.endsWith(IN_PROGRESS) ? file.resolveSibling(name.substring(0, name.length() - IN_PROGRESS.length())) : file;
+  }
+
+  /** True once the log was renamed to its final name (or was never in progress) and fully read. */
+  boolean completed() { return completed; }
+
+  /** Bytes consumed so far. */
+  long offset() { return offset; }
+
+  /**
+   * Parses whatever was appended since the last call.
+   * @return true if any new line was parsed or the log completed
+   */
+  boolean poll() throws IOException {
+    if (completed) return false;
+
+    long before = state.seenLines;
+    boolean done = false;
+    try (FileChannel ch = open()) {
+      long size = ch.size();
+      if (size < offset) throw new IOException("Event log shrank from " + offset + " to " + size + " bytes: " + file);
+      while (offset < size) {
+        if (pending == buf.length) buf = Arrays.copyOf(buf, buf.length * 2); // one line longer than the buffer
+        int n = ch.read(ByteBuffer.wrap(buf, pending, (int) Math.min(buf.length - pending, size - offset)), offset);
+        if (n <= 0) break;
+        offset += n;
+        consume(pending + n);
+      }
+      done = file.equals(finalFile);
+    }
+
+    if (done) {
+      if (pending > 0) ByteLineReader.forEachLine(buf, 0, pending, state::onLine);
+      pending = 0;
+      completed = true;
+    }
+    return completed || state.seenLines != before;
+  }
+
+  private FileChannel open() throws IOException {
+    try {
+      return FileChannel.open(file, StandardOpenOption.READ);
+    } catch (NoSuchFileException e) {
+      if (file.equals(finalFile) || !Files.exists(finalFile)) throw e;
+      file = finalFile; // renamed at completion; same bytes, so the offset still holds
+      return FileChannel.open(file, StandardOpenOption.READ);
+    }
+  }
+
+  /** Output for everything parsed so far; does not re-read the file. */
+  CompactParsedLog snapshot() throws IOException { return parser.build(state); }
+
+  /** Feeds the complete lines in buf[0, len) and moves the unterminated rest to the front. */
+  private void consume(int len) throws IOException {
+    int lastNl = len - 1;
+    while (lastNl >= pending && buf[lastNl] != '\n') lastNl--;
+    if (lastNl < pending) {
+      pending = len;
+      return;
+    }
+    ByteLineReader.forEachLine(buf, 0, lastNl + 1, state::onLine);
+    pending = len - lastNl - 1;
+    System.arraycopy(buf, lastNl + 1, buf, 0, pending);
+  }
+}
@@ -0,0 +1,47 @@
+package com.yourorg.sparklog;
+
+/**
+ * Spark listener events the parser subscribes to. Anything else decodes as {@link #OTHER}
+ * and is dropped without reading the rest of the line.
+ */
+enum EventType {
+  APP_START("SparkListenerApplicationStart"),
+  APP_END("SparkListenerApplicationEnd"),
+  ENV_UPDATE("SparkListenerEnvironmentUpdate"),
+  EXEC_ADDED("SparkListenerExecutorAdded"),
+  EXEC_REMOVED("SparkListenerExecutorRemoved"),
+  STAGE_SUBMITTED("SparkListenerStageSubmitted"),
+  STAGE_COMPLETED("SparkListenerStageCompleted"),
+  TASK_END("SparkListenerTaskEnd"),
+  JOB_START("SparkListenerJobStart"),
+  JOB_END("SparkListenerJobEnd"),
+  SQL_START("org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionStart"),
+  SQL_END("org.apache.spark.sql.execution.ui.SparkListenerSQLExecutionEnd"),
+  SQL_ADAPTIVE("org.apache.spark.sql.execution.ui.SparkListenerSQLAdaptiveExecutionUpdate"),
+  SQL_ADAPTIVE_METRICS("org.apache.spark.sql.execution.ui.SparkListenerSQLAdaptiveSQLMetricUpdates"),
+  DRIVER_ACCUM("org.apache.spark.sql.execution.ui.SparkListenerDriverAccumUpdates"),
+  OTHER(null);
+
+  private static final EventType[] SUBSCRIBED = {
+      APP_START, APP_END, ENV_UPDATE, EXEC_ADDED, EXEC_REMOVED, STAGE_SUBMITTED, STAGE_COMPLETED, TASK_END,
+      JOB_START, JOB_END, SQL_START, SQL_END, SQL_ADAPTIVE, SQL_ADAPTIVE_METRICS, DRIVER_ACCUM
+  };
+
+  final String eventName;
+
+  EventType(String eventName) { this.eventName = eventName; }
+
+  static EventType[] subscribed() { return SUBSCRIBED.clone(); }
+
+  /** Resolves an event name straight from the parser's char buffer, without building a String. */
+  static EventType of(char[] buf, int off, int len) {
+    for (EventType t : SUBSCRIBED) {
+      String n = t.eventName;
+      if (n.length() != len) continue;
+      int i = 0;
+      while (i < len && n.charAt(i) == buf[off + i]) i++;
+      if (i == len) return t;
+    }
+    return OTHER;
+  }
+}
@@ -0,0 +1,144 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Byte-level pre-pass over a raw event log line. Reads the {@code "Event":"..."} value at the
+ * start of the line and tells the caller whether any handler subscribes to it, before the
+ * line is decoded at all. Skipped lines are counted per event type.
+ *
+ * Only the layout Spark's JsonProtocol writes is trusted ("Event" as the first field). Any
+ * other shape (reordered fields, escapes, extra whitespace) is reported as {@link #UNKNOWN}
+ * and goes through the full decoder, which makes the final call.
+ */
+final class EventTypeFilter {
+  /** Result for lines the filter cannot classify from the prefix alone. */
+  static final EventType UNKNOWN = null;
+
+  private static final byte[] EVENT_PREFIX = "\"Event\":\"".getBytes(StandardCharsets.US_ASCII);
+  private static final int MAX_TRACKED_TYPES = 256;
+
+  private final EventType[] types;
+  private final byte[][] names;
+
+  // skipped-type counters, keyed by the raw name bytes so no String is built per line
+  private byte[][] skippedNames = new byte[16][];
+  private long[] skippedCounts = new long[16];
+  private int skippedTypes = 0;
+  private long skippedUntracked = 0;
+
+  EventTypeFilter() { this(EventType.subscribed()); }
+
+  EventTypeFilter(EventType... subscribed) {
+    types = subscribed.clone();
+    names = new byte[types.length][];
+    for (int i = 0; i < types.length; i++) names[i] = types[i].eventName.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * @return the subscribed type, {@link EventType#OTHER} if the line can be dropped, or
+   *         {@link #UNKNOWN} if the line needs full decoding to tell.
+   */
+  EventType classify(byte[] buf, int off, int len) {
+    int end = off + len;
+    int p = skipWhitespace(buf, off, end);
+    if (p >= end || buf[p] != '{') return UNKNOWN;
+    p = skipWhitespace(buf, p + 1, end);
+    if (end - p < EVENT_PREFIX.length || !Arrays.equals(EVENT_PREFIX, 0, EVENT_PREFIX.length, buf, p, p + EVENT_PREFIX.length)) {
+      return UNKNOWN;
+    }
+
+    int from = p + EVENT_PREFIX.length;
+    int to = from;
+    while (to < end && buf[to] != '"') {
+      if (buf[to] == '\\') return UNKNOWN;
+      to++;
+    }
+    if (to >= end) return UNKNOWN;
+
+    for (int i = 0; i < names.length; i++) {
+      if (Arrays.equals(names[i], 0, names[i].length, buf, from, to)) return types[i];
+    }
+    countSkipped(buf, from, to);
+    return EventType.OTHER;
+  }
+
+  /** Skipped lines per event type, most frequent first. */
+  Map<String, Long> skippedByType() {
+    List<Map.Entry<String, Long>> l = new ArrayList<>();
+    for (int i = 0; i < skippedTypes; i++) {
+      l.add(Map.entry(new String(skippedNames[i], StandardCharsets.UTF_8), skippedCounts[i]));
+    }
+    l.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+    Map<String, Long> m = new LinkedHashMap<>();
+    for (var e : l) m.put(e.getKey(), e.getValue());
+    if (skippedUntracked > 0) m.put("(other)", skippedUntracked);
+    return m;
+  }
+
+  long skippedTotal() {
+    long n = skippedUntracked;
+    for (int i = 0; i < skippedTypes; i++) n += skippedCounts[i];
+    return n;
+  }
+
+  void mergeFrom(EventTypeFilter o) {
+    for (int i = 0; i < o.skippedTypes; i++) {
+      byte[] n = o.skippedNames[i];
+      count(n, 0, n.length, o.skippedCounts[i]);
+    }
+    skippedUntracked += o.skippedUntracked;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeInt(skippedTypes);
+    for (int i = 0; i < skippedTypes; i++) {
+      out.writeInt(skippedNames[i].length);
+      out.write(skippedNames[i]);
+      out.writeLong(skippedCounts[i]);
+    }
+    out.writeLong(skippedUntracked);
+  }
+
+  /** Adds counters written by {@link #write}. */
+  void read(DataInput in) throws IOException {
+    for (int i = in.readInt(); i > 0; i--) {
+      byte[] n = new byte[in.readInt()];
+      in.readFully(n);
+      count(n, 0, n.length, in.readLong());
+    }
+    skippedUntracked += in.readLong();
+  }
+
+  private void countSkipped(byte[] buf, int from, int to) {
+    count(buf, from, to, 1);
+  }
+
+  private void count(byte[] buf, int from, int to, long n) {
+    for (int i = 0; i < skippedTypes; i++) {
+      byte[] name = skippedNames[i];
+      if (Arrays.equals(name, 0, name.length, buf, from, to)) {
+        skippedCounts[i] += n;
+        return;
+      }
+    }
+    if (skippedTypes == MAX_TRACKED_TYPES) {
+      skippedUntracked += n;
+      return;
+    }
+    if (skippedTypes == skippedNames.length) {
+      skippedNames = Arrays.copyOf(skippedNames, skippedTypes * 2);
+      skippedCounts = Arrays.copyOf(skippedCounts, skippedTypes * 2);
+    }
+    skippedNames[skippedTypes] = Arrays.copyOfRange(buf, from, to);
+    skippedCounts[skippedTypes++] = n;
+  }
+
+  private static int skipWhitespace(byte[] buf, int i, int end) {
+    while (i < end && (buf[i] == ' ' || buf[i] == '\t')) i++;
+    return i;
+  }
+}
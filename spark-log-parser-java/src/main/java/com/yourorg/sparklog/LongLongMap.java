@@ -0,0 +1,96 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+
+/**
+ * Open-addressing hash map from {@code long} keys to {@code long} sums, for accumulator
+ * updates: one {@link #add} per task accumulable, with neither key nor value boxed.
+ * Linear probing over power-of-two tables; a separate occupancy array keeps every key usable.
+ */
+final class LongLongMap {
+  private static final float LOAD = 0.5f;
+
+  private long[] keys;
+  private long[] vals;
+  private boolean[] used;
+  private int size;
+  private int mask;
+
+  LongLongMap() { this(64); }
+
+  LongLongMap(int expected) {
+    int cap = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD)) - 1) << 1;
+    keys = new long[cap];
+    vals = new long[cap];
+    used = new boolean[cap];
+    mask = cap - 1;
+  }
+
+  int size() { return size; }
+
+  boolean containsKey(long key) {
+    for (int i = slot(key); used[i]; i = (i + 1) & mask) if (keys[i] == key) return true;
+    return false;
+  }
+
+  /** The sum for {@code key}, 0 if absent. */
+  long get(long key) {
+    for (int i = slot(key); used[i]; i = (i + 1) & mask) if (keys[i] == key) return vals[i];
+    return 0L;
+  }
+
+  void add(long key, long delta) {
+    int i = slot(key);
+    while (used[i]) {
+      if (keys[i] == key) {
+        vals[i] += delta;
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    vals[i] = delta;
+    used[i] = true;
+    if (++size > keys.length * LOAD) rehash(keys.length * 2);
+  }
+
+  void mergeFrom(LongLongMap o) {
+    for (int j = 0; j < o.keys.length; j++) if (o.used[j]) add(o.keys[j], o.vals[j]);
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeInt(size);
+    for (int j = 0; j < keys.length; j++) {
+      if (!used[j]) continue;
+      out.writeLong(keys[j]);
+      out.writeLong(vals[j]);
+    }
+  }
+
+  /** Adds entries written by {@link #write}. */
+  void read(DataInput in) throws IOException {
+    for (int n = in.readInt(); n > 0; n--) add(in.readLong(), in.readLong());
+  }
+
+  private int slot(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  private void rehash(int cap) {
+    long[] ok = keys, ov = vals;
+    boolean[] ou = used;
+    keys = new long[cap];
+    vals = new long[cap];
+    used = new boolean[cap];
+    mask = cap - 1;
+    for (int j = 0; j < ok.length; j++) {
+      if (!ou[j]) continue;
+      int i = slot(ok[j]);
+      while (used[i]) i = (i + 1) & mask;
+      keys[i] = ok[j];
+      vals[i] = ov[j];
+      used[i] = true;
+    }
+  }
+}
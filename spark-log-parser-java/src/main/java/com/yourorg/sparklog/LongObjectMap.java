@@ -0,0 +1,90 @@
+package com.yourorg.sparklog;
+
+import java.util.*;
+import java.util.function.LongFunction;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to objects, so hot lookups
+ * (one per task event) neither box the key nor build a composite String for it.
+ * Linear probing over power-of-two tables; no removal, which the aggregation never needs.
+ */
+final class LongObjectMap<V> {
+  private static final float LOAD = 0.5f;
+
+  private long[] keys;
+  private Object[] vals; // null marks an empty slot
+  private int size;
+  private int mask;
+
+  LongObjectMap() { this(64); }
+
+  LongObjectMap(int expected) {
+    int cap = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD)) - 1) << 1;
+    keys = new long[cap];
+    vals = new Object[cap];
+    mask = cap - 1;
+  }
+
+  /** Packs a (stageId, attemptId) pair into one key. */
+  static long pack(int hi, int lo) { return ((long) hi << 32) | (lo & 0xFFFFFFFFL); }
+
+  int size() { return size; }
+
+  @SuppressWarnings("unchecked")
+  V get(long key) {
+    for (int i = slot(key); ; i = (i + 1) & mask) {
+      Object v = vals[i];
+      if (v == null) return null;
+      if (keys[i] == key) return (V) v;
+    }
+  }
+
+  V computeIfAbsent(long key, LongFunction<? extends V> fn) {
+    V v = get(key);
+    if (v == null) {
+      v = fn.apply(key);
+      put(key, v);
+    }
+    return v;
+  }
+
+  void put(long key, V value) {
+    Objects.requireNonNull(value);
+    int i = slot(key);
+    while (vals[i] != null) {
+      if (keys[i] == key) { vals[i] = value; return; }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    vals[i] = value;
+    if (++size > keys.length * LOAD) rehash(keys.length * 2);
+  }
+
+  /** Values in table order (unspecified). */
+  @SuppressWarnings("unchecked")
+  List<V> values() {
+    List<V> l = new ArrayList<>(size);
+    for (Object v : vals) if (v != null) l.add((V) v);
+    return l;
+  }
+
+  private int slot(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  private void rehash(int cap) {
+    long[] ok = keys;
+    Object[] ov = vals;
+    keys = new long[cap];
+    vals = new Object[cap];
+    mask = cap - 1;
+    for (int j = 0; j < ok.length; j++) {
+      if (ov[j] == null) continue;
+      int i = slot(ok[j]);
+      while (vals[i] != null) i = (i + 1) & mask;
+      keys[i] = ok[j];
+      vals[i] = ov[j];
+    }
+  }
+}
@@ -2,17 +2,45 @@ package com.yourorg.sparklog;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Main {
-  public static void main(String[] args) throws Exception {
-    if (args.length < 2) {
-      System.err.println("Usage: java -jar spark-log-parser-java.jar <eventLogPath> <outDir> [driverLogPath] [tz]");
-      System.err.println("  tz example: UTC or Asia/Kolkata (default UTC)");
-      System.exit(1);
+  private static final long DEFAULT_EXACT_BUDGET_MB = 256;
+  private static final long DEFAULT_TAIL_INTERVAL_SEC = 10;
+  private static final String CHECKPOINT_FILE = "parser.checkpoint";
+  private static final double DEFAULT_BATCH_HEAP_FRACTION = 0.6;
+
+  public static void main(String[] argv) throws Exception {
+    // options may appear anywhere; everything else is positional
+    long exactBudgetBytes = 0;
+    boolean checkpoint = false;
+    long heapBudgetBytes = (long) (Runtime.getRuntime().maxMemory() * DEFAULT_BATCH_HEAP_FRACTION);
+    List<String> rest = new ArrayList<>();
+    for (String a : argv) {
+      if (a.equals("--exact-percentiles")) exactBudgetBytes = DEFAULT_EXACT_BUDGET_MB << 20;
+      else if (a.startsWith("--exact-percentiles=")) exactBudgetBytes = megabytes(a.substring("--exact-percentiles=".length()));
+      else if (a.equals("--checkpoint")) checkpoint = true;
+      else if (a.startsWith("--heap-budget=")) heapBudgetBytes = megabytes(a.substring("--heap-budget=".length()));
+      else rest.add(a);
+    }
+    String[] args = rest.toArray(new String[0]);
+
+    if (args.length >= 1 && args[0].equals("tail")) {
+      if (args.length < 3) usageAndExit();
+      tail(Path.of(args[1]), new File(args[2]), args.length >= 4 ? seconds(args[3]) : DEFAULT_TAIL_INTERVAL_SEC);
+      return;
+    }
+    if (args.length >= 1 && args[0].equals("batch")) {
+      if (args.length < 3) usageAndExit();
+      batch(Path.of(args[1]), new File(args[2]), heapBudgetBytes, exactBudgetBytes);
+      return;
     }
+    if (args.length < 2) usageAndExit();
 
     Path eventLog = Path.of(args[0]);
     File outDir = new File(args[1]);
@@ -20,13 +48,22 @@ public class Main {
 
     ZoneId zone = ZoneId.of(args.length >= 4 ? args[3] : "UTC");
 
-    SparkEventLogParser parser = new SparkEventLogParser();
-    CompactParsedLog parsed = parser.parse(eventLog);
+    SparkEventLogParser parser = new SparkEventLogParser(Runtime.getRuntime().availableProcessors(), exactBudgetBytes);
+    CompactParsedLog parsed = checkpoint
+        ? parser.parse(eventLog, new File(outDir, CHECKPOINT_FILE).toPath())
+        : parser.parse(eventLog);
+    if (parser.checkpointUsed()) {
+      long at = parser.checkpointResumedAt();
+      System.out.println("Checkpoint " + (at >= 0 ? "resumed at " + at : "started") + ", parsed " + parser.checkpointParsedBytes() + " bytes");
+      if (parser.droppedPartialLineBytes() > 0) {
+        System.out.println("Last line still being written (" + parser.droppedPartialLineBytes() + " bytes), left for the next run");
+      }
+    }
 
     // Optional driver log for MatchingEngine rule lines
     if (args.length >= 3) {
       Path driverLog = Path.of(args[2]);
-      List<MatchRuleMetric> rules = MatchingEngineLogParser.parse(driverLog, zone);
+      List<MatchRuleMetric> rules = MatchingEngineLogParser.parse(driverLog, zone, Runtime.getRuntime().availableProcessors());
       parsed.matchRules.addAll(rules);
 
       parsed.ruleStageCorrelations = RuleStageCorrelator.correlate(parsed);
@@ -37,14 +74,98 @@ public class Main {
     ObjectMapper om = new ObjectMapper();
     File parsedFile = new File(outDir, "parsed.json");
     File utilFile = new File(outDir, "utilization.json");
+    File snapshotFile = new File(outDir, "parsed.bin");
 
     om.writerWithDefaultPrettyPrinter().writeValue(parsedFile, parsed);
     om.writerWithDefaultPrettyPrinter().writeValue(utilFile, parsed.utilization);
+    ParsedLogSnapshot.write(parsed, snapshotFile.toPath());
 
     System.out.println("Wrote: " + parsedFile.getAbsolutePath());
     System.out.println("Wrote: " + utilFile.getAbsolutePath());
+    System.out.println("Wrote: " + snapshotFile.getAbsolutePath());
     System.out.println("Parsed matchRules=" + parsed.matchRules.size());
     System.out.println("Correlations=" + parsed.ruleStageCorrelations.size());
     System.out.println("Recommendations=" + parsed.runInsights.recommendations.size());
   }
+
+  private static void batch(Path inputDir, File outDir, long heapBudgetBytes, long exactBudgetBytes) throws Exception {
+    outDir.mkdirs();
+    BatchParser.Summary s = new BatchParser(heapBudgetBytes, exactBudgetBytes).run(inputDir, outDir);
+
+    File summaryFile = new File(outDir, "batch-summary.json");
+    new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(summaryFile, s);
+
+    System.out.printf("Batch: %d files (%d failed), %.1f MB in %.1fs -> %.2f files/s, %.1f MB/s [%s, heap budget %d MB]%n",
+        s.files, s.failed, s.totalBytes / (double) (1 << 20), s.wallMs / 1000.0, s.filesPerSec, s.mbPerSec, s.executor, s.heapBudgetMb);
+    for (BatchParser.Run r : s.slowest) System.out.printf("  %8d ms  %10d bytes  %s%n", r.parseMs, r.bytes, r.log);
+    System.out.println("Wrote: " + summaryFile.getAbsolutePath());
+    if (s.failed > 0) System.exit(2);
+  }
+
+  /** Follows a growing .inprogress log, rewriting the outputs every interval until the app completes. */
+  private static void tail(Path eventLog, File outDir, long intervalSec) throws Exception {
+    outDir.mkdirs();
+    ObjectMapper om = new ObjectMapper();
+    EventLogTailer tailer = new EventLogTailer(eventLog);
+
+    while (true) {
+      long t0 = System.currentTimeMillis();
+      if (tailer.poll()) {
+        CompactParsedLog parsed = tailer.snapshot();
+        RecommendationsEngine.enrich(parsed);
+        writeAtomically(om, new File(outDir, "parsed.json"), parsed);
+        writeAtomically(om, new File(outDir, "utilization.json"), parsed.utilization);
+        ParsedLogSnapshot.write(parsed, new File(outDir, "parsed.bin").toPath());
+        System.out.println("Snapshot offset=" + tailer.offset() + " stages=" + parsed.stages.size()
+            + " status=" + parsed.status + (tailer.completed() ? " (completed)" : ""));
+      }
+      if (tailer.completed()) return;
+      Thread.sleep(Math.max(0, intervalSec * 1000 - (System.currentTimeMillis() - t0)));
+    }
+  }
+
+  /** Readers polling the output never see a half-written snapshot. */
+  private static void writeAtomically(ObjectMapper om, File target, Object value) throws Exception {
+    File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+    om.writerWithDefaultPrettyPrinter().writeValue(tmp, value);
+    Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** A positive size in MB as bytes; anything else is a usage error. */
+  private static long megabytes(String mb) {
+    try {
+      long v = Long.parseLong(mb);
+      if (v > 0 && v <= Long.MAX_VALUE >> 20) return v << 20;
+    } catch (NumberFormatException ignored) {
+    }
+    System.err.println("Not a positive size in MB: " + mb);
+    usageAndExit();
+    return 0;
+  }
+
+  /** A positive number of seconds; anything else is a usage error. */
+  private static long seconds(String sec) {
+    try {
+      long v = Long.parseLong(sec);
+      if (v > 0 && v <= Long.MAX_VALUE / 1000) return v;
+    } catch (NumberFormatException ignored) {
+    }
+    System.err.println("Not a positive number of seconds: " + sec);
+    usageAndExit();
+    return 0;
+  }
+
+  private static void usageAndExit() {
+    System.err.println("Usage: java -jar spark-log-parser-java.jar [--exact-percentiles[=<MB>]] [--checkpoint] <eventLogPath> <outDir> [driverLog|dir|glob] [tz]");
+    System.err.println("       java -jar spark-log-parser-java.jar tail <eventLog.inprogress> <outDir> [intervalSeconds]");
+    System.err.println("       java -jar spark-log-parser-java.jar [--heap-budget=<MB>] [--exact-percentiles[=<MB>]] batch <inputDir> <outDir>");
+    System.err.println("  eventLogPath: a single event log file, or a rolling eventlog_v2_<appId> directory");
+    System.err.println("  --exact-percentiles: exact task-duration percentiles, spilling to temp files past <MB> of heap (default 256)");
+    System.err.println("  --checkpoint: keep " + CHECKPOINT_FILE + " in outDir and only parse what was appended since the last run");
+    System.err.println("  tail: follows an uncompressed in-progress log, rewriting parsed.json/utilization.json/parsed.bin every interval (default 10s)");
+    System.err.println("  batch: parses every log in inputDir into outDir/<log>/ and writes batch-summary.json;");
+    System.err.println("         logs in flight are limited by --heap-budget (default 60% of max heap)");
+    System.err.println("  tz example: UTC or Asia/Kolkata (default UTC)");
+    System.exit(1);
+  }
 }
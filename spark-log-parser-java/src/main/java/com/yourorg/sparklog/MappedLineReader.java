@@ -0,0 +1,77 @@
+package com.yourorg.sparklog;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+/**
+ * Line reader for uncompressed logs over {@link FileChannel#map} windows.
+ *
+ * Line boundaries are found on the mapped bytes (8 bytes per step), and lines are handed out
+ * as slices of the mapping, so the file is never copied through a read buffer. The window
+ * slides forward from the start of the last partial line, which keeps each mapping under
+ * the 2 GB limit of a single MappedByteBuffer regardless of file size.
+ */
+final class MappedLineReader {
+  static final long WINDOW_BYTES = 256L << 20;
+  private static final long MAX_WINDOW = Integer.MAX_VALUE - 8;
+
+  private static final long NL_X8 = 0x0A0A0A0A0A0A0A0AL;
+  private static final long LO_X8 = 0x0101010101010101L;
+  private static final long HI_X8 = 0x8080808080808080L;
+
+  /** Receives one line as a slice of the current window; only valid for the duration of the call. */
+  interface LineSink {
+    void line(ByteBuffer window, int off, int len) throws IOException;
+  }
+
+  private MappedLineReader() {}
+
+  /** Lines of the byte range [start, end); {@code start} must be at a line start. */
+  static void forEachLine(FileChannel ch, long start, long end, LineSink sink) throws IOException {
+    long pos = start;
+    long window = WINDOW_BYTES;
+
+    while (pos < end) {
+      int n = (int) Math.min(window, end - pos);
+      ByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, pos, n).order(ByteOrder.LITTLE_ENDIAN);
+      boolean last = pos + n == end;
+
+      int lineStart = 0;
+      int nl;
+      while ((nl = indexOfNewline(mb, lineStart, n)) >= 0) {
+        emit(mb, lineStart, nl, sink);
+        lineStart = nl + 1;
+      }
+
+      if (last) {
+        if (n > lineStart) emit(mb, lineStart, n, sink);
+        pos = end;
+      } else if (lineStart == 0) {
+        // one line longer than the window: widen and retry from the same position
+        if (window >= MAX_WINDOW) throw new IOException("Line longer than " + MAX_WINDOW + " bytes at offset " + pos);
+        window = Math.min(window * 2, MAX_WINDOW);
+      } else {
+        pos += lineStart;
+        window = WINDOW_BYTES;
+      }
+    }
+  }
+
+  private static void emit(ByteBuffer b, int from, int to, LineSink sink) throws IOException {
+    if (to > from && b.get(to - 1) == '\r') to--;
+    sink.line(b, from, to - from);
+  }
+
+  /** SWAR search: the lowest flagged byte of a word is always a true match. */
+  private static int indexOfNewline(ByteBuffer b, int from, int to) {
+    int i = from;
+    for (; i + 8 <= to; i += 8) {
+      long w = b.getLong(i) ^ NL_X8;
+      long t = (w - LO_X8) & ~w & HI_X8;
+      if (t != 0) return i + (Long.numberOfTrailingZeros(t) >>> 3);
+    }
+    for (; i < to; i++) if (b.get(i) == '\n') return i;
+    return -1;
+  }
+}
@@ -4,88 +4,298 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.*;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.*;
 
+/**
+ * Rule summary lines from the MatchingEngine driver log.
+ *
+ * A hand-written scanner: lines without "Rule" are dropped after one indexOf; on a rule line the
+ * counts, percentage and match time are read in a single left-to-right pass, with numbers parsed
+ * in place. It accepts exactly what the earlier regexes did (java.util.regex semantics, \s being
+ * ASCII whitespace):
+ * <pre>
+ *   Rule\s*\[([^\]]+)]                                   rule, first match
+ *   (Match Candidates|Matches from ageing breaks|Matches|Total Unmatched)\s*=\s*(\d+)
+ *                                                        every match, the last one wins
+ *   Total Match %\s*=\s*([0-9.]+)%                       first match
+ *   MatchTime\s*=\s*([0-9.]+)s                           first match
+ *   ^(\d{2}/\d{2}/\d{2}\s+\d{2}:\d{2}:\d{2})\s+          timestamp prefix
+ * </pre>
+ *
+ * The input may be one file, a directory, or a glob on the file name ({@code logs/stderr*}), so
+ * a rotated log ({@code stderr}, {@code stderr.1.gz} ... {@code stderr.40.gz}) is read as a whole.
+ * Segments are decoded in-stream by {@link EventLogCodec} and parsed in parallel, then merged by
+ * timestamp; see {@link #merge}.
+ */
 public class MatchingEngineLogParser {
 
-  private static final Pattern RULE_PATTERN =
-      Pattern.compile("Rule\\s*\\[(?<rule>[^\\]]+)]");
+  // in alternation order: "Matches" must be tried after "Matches from ageing breaks"
+  private static final String[] LONG_KEYS = {"Match Candidates", "Matches from ageing breaks", "Matches", "Total Unmatched"};
+  private static final String PCT_KEY = "Total Match %";
+  private static final String TIME_KEY = "MatchTime";
 
-  private static final Pattern LONG_FIELD =
-      Pattern.compile("(?<key>Match Candidates|Matches from ageing breaks|Matches|Total Unmatched)\\s*=\\s*(?<val>\\d+)");
+  /** Rotation suffix: {@code stderr.3.gz} is index 3; higher indices are older. */
+  private static final Pattern ROTATED = Pattern.compile(".*?\\.(\\d+)(?:\\.[A-Za-z0-9]+)?");
 
-  private static final Pattern PCT_FIELD =
-      Pattern.compile("Total Match %\\s*=\\s*(?<val>[0-9.]+)%");
+  private static final double[] POW10 = new double[23]; // exact as doubles
+  static {
+    POW10[0] = 1;
+    for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+  }
 
-  private static final Pattern TIME_FIELD =
-      Pattern.compile("MatchTime\\s*=\\s*(?<val>[0-9.]+)s");
+  public static List<MatchRuleMetric> parse(Path logPath, ZoneId zone) throws IOException {
+    return parse(logPath, zone, 1);
+  }
 
-  private static final Pattern TS_PREFIX =
-      Pattern.compile("^(?<dt>\\d{2}/\\d{2}/\\d{2}\\s+\\d{2}:\\d{2}:\\d{2})\\s+");
+  /**
+   * @param logPath     a file, a directory of segments, or a directory plus a glob on file names
+   * @param parallelism segments parsed at once
+   */
+  public static List<MatchRuleMetric> parse(Path logPath, ZoneId zone, int parallelism) throws IOException {
+    List<Path> segments = segments(logPath);
+    if (segments.size() == 1) return parseSegment(segments.get(0), zone);
 
-  private static final DateTimeFormatter TS_FMT =
-      DateTimeFormatter.ofPattern("dd/MM/yy HH:mm:ss");
+    // largest first, so the longest segment does not start last
+    Map<Path, Long> sizes = new HashMap<>();
+    for (Path p : segments) sizes.put(p, Files.size(p));
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < segments.size(); i++) order.add(i);
+    order.sort((a, b) -> Long.compare(sizes.get(segments.get(b)), sizes.get(segments.get(a))));
 
-  public static List<MatchRuleMetric> parse(Path logPath, ZoneId zone) throws IOException {
+    List<Callable<List<MatchRuleMetric>>> tasks = new ArrayList<>();
+    for (int i : order) {
+      Path seg = segments.get(i);
+      tasks.add(() -> parseSegment(seg, zone));
+    }
+    List<List<MatchRuleMetric>> parts = new ArrayList<>(Collections.nCopies(segments.size(), null));
+    ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(parallelism, tasks.size())));
+    try {
+      List<Future<List<MatchRuleMetric>>> futures = pool.invokeAll(tasks);
+      for (int k = 0; k < futures.size(); k++) parts.set(order.get(k), futures.get(k).get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted parsing " + logPath);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException x) throw x;
+      if (e.getCause() instanceof RuntimeException x) throw x;
+      throw new IOException(e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+    return merge(parts);
+  }
+
+  private static List<MatchRuleMetric> parseSegment(Path file, ZoneId zone) throws IOException {
     List<MatchRuleMetric> out = new ArrayList<>();
+    DriverLogTimestamps ts = new DriverLogTimestamps(zone);
 
-    try (BufferedReader br = Files.newBufferedReader(logPath, StandardCharsets.UTF_8)) {
+    InputStream in = EventLogCodec.detect(file).open(file);
+    try (BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
       String line;
       while ((line = br.readLine()) != null) {
+        MatchRuleMetric r = parseLine(line, ts);
+        if (r != null) out.add(r);
+      }
+    }
 
-        Matcher ruleMatcher = RULE_PATTERN.matcher(line);
-        if (!ruleMatcher.find()) continue;
-
-        MatchRuleMetric r = new MatchRuleMetric();
-        r.rule = ruleMatcher.group("rule");
-        r.timestampMs = parseTimestampMs(line, zone);
+    return out;
+  }
 
-        extractLongs(line, r);
-        extractPct(line, r);
-        extractTime(line, r);
+  /**
+   * The files behind {@code logPath}, oldest first: by rotation index descending (the live file,
+   * with no index, last), then by name. A directory contributes its visible regular files; a
+   * file name containing {@code * ? [ {} is a glob over its directory.
+   */
+  static List<Path> segments(Path logPath) throws IOException {
+    String name = logPath.getFileName() == null ? "" : logPath.getFileName().toString();
+    boolean glob = name.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+    if (!glob && !Files.isDirectory(logPath)) return List.of(logPath);
 
-        out.add(r);
+    Path dir = glob ? (logPath.getParent() == null ? Path.of(".") : logPath.getParent()) : logPath;
+    PathMatcher m = glob ? FileSystems.getDefault().getPathMatcher("glob:" + name) : null;
+    List<Path> segs = new ArrayList<>();
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+      for (Path p : ds) {
+        Path fn = p.getFileName();
+        if (fn.toString().startsWith(".") || !Files.isRegularFile(p)) continue;
+        if (m == null || m.matches(fn)) segs.add(p);
       }
     }
+    if (segs.isEmpty()) throw new NoSuchFileException(logPath.toString(), null, "no driver log segments");
+    segs.sort(Comparator.comparingLong(MatchingEngineLogParser::rotationIndex).reversed()
+        .thenComparing(p -> p.getFileName().toString()));
+    return segs;
+  }
+
+  private static long rotationIndex(Path p) {
+    Matcher m = ROTATED.matcher(p.getFileName().toString());
+    return m.matches() && m.group(1).length() < 10 ? Long.parseLong(m.group(1)) : 0;
+  }
 
+  /**
+   * Merges per-segment results (each in file order, segments oldest first) into timestamp order.
+   * A line without a timestamp sorts with the line before it in its segment, and equal times
+   * keep segment order, so concatenated rotations come out exactly as if read as one file.
+   */
+  static List<MatchRuleMetric> merge(List<List<MatchRuleMetric>> parts) {
+    int total = 0;
+    for (List<MatchRuleMetric> p : parts) total += p.size();
+    List<MatchRuleMetric> out = new ArrayList<>(total);
+
+    int[] pos = new int[parts.size()];
+    long[] key = new long[parts.size()];
+    Arrays.fill(key, Long.MIN_VALUE);
+    PriorityQueue<Integer> heads = new PriorityQueue<>((a, b) -> key[a] != key[b] ? Long.compare(key[a], key[b]) : Integer.compare(a, b));
+    for (int s = 0; s < parts.size(); s++) {
+      if (advance(parts.get(s), pos, key, s)) heads.add(s);
+    }
+    while (!heads.isEmpty()) {
+      int s = heads.poll();
+      out.add(parts.get(s).get(pos[s]++));
+      if (advance(parts.get(s), pos, key, s)) heads.add(s);
+    }
     return out;
   }
 
-  private static Long parseTimestampMs(String line, ZoneId zone) {
-    Matcher m = TS_PREFIX.matcher(line);
-    if (!m.find()) return null;
+  /** Sets segment {@code s}'s sort key from its next metric; false when it is exhausted. */
+  private static boolean advance(List<MatchRuleMetric> part, int[] pos, long[] key, int s) {
+    if (pos[s] >= part.size()) return false;
+    Long t = part.get(pos[s]).timestampMs;
+    if (t != null) key[s] = t;
+    return true;
+  }
 
-    String dt = m.group("dt");
-    try {
-      LocalDateTime ldt = LocalDateTime.parse(dt, TS_FMT);
-      return ldt.atZone(zone).toInstant().toEpochMilli();
-    } catch (Exception ignored) {
-      return null;
+  /** The metric for a rule line; null for any other line. */
+  static MatchRuleMetric parseLine(String line, DriverLogTimestamps ts) {
+    String rule = null;
+    for (int i = line.indexOf("Rule"); i >= 0 && rule == null; i = line.indexOf("Rule", i + 1)) rule = rule(line, i);
+    if (rule == null) return null;
+
+    MatchRuleMetric r = new MatchRuleMetric();
+    r.rule = rule;
+    r.timestampMs = parseTimestampMs(line, ts);
+
+    boolean pct = false, time = false;
+    int longFrom = 0; // the long fields are found repeatedly, each search resuming after the last match
+    for (int i = 0, n = line.length(); i < n; i++) {
+      char c = line.charAt(i);
+      if (c == 'M') {
+        if (i >= longFrom) longFrom = Math.max(longFrom, longField(line, i, r));
+        if (!time && line.startsWith(TIME_KEY, i)) time = decimalField(line, i + TIME_KEY.length(), 's', r, false);
+      } else if (c == 'T') {
+        if (i >= longFrom) longFrom = Math.max(longFrom, longField(line, i, r));
+        if (!pct && line.startsWith(PCT_KEY, i)) pct = decimalField(line, i + PCT_KEY.length(), '%', r, true);
+      }
     }
+    return r;
+  }
+
+  /** {@code Rule\s*\[([^\]]+)]} at {@code i}, or null. */
+  private static String rule(String line, int i) {
+    int j = skipSpace(line, i + 4);
+    if (j >= line.length() || line.charAt(j) != '[') return null;
+    int k = line.indexOf(']', j + 1);
+    return k > j + 1 ? line.substring(j + 1, k) : null;
+  }
+
+  /** Stores a long field starting at {@code i}; returns where it ends, or -1 if there is none. */
+  private static int longField(String line, int i, MatchRuleMetric r) {
+    for (int k = 0; k < LONG_KEYS.length; k++) {
+      if (!line.startsWith(LONG_KEYS[k], i)) continue;
+      int v = afterEquals(line, i + LONG_KEYS[k].length());
+      int e = v < 0 ? -1 : digitsEnd(line, v);
+      if (e <= v) continue;
+      long x = Long.parseLong(line, v, e, 10);
+      switch (k) {
+        case 0 -> r.matchCandidates = x;
+        case 1 -> r.matchesFromAgeingBreaks = x;
+        case 2 -> r.matches = x;
+        default -> r.totalUnmatched = x;
+      }
+      return e;
+    }
+    return -1;
+  }
+
+  /** {@code \s*=\s*([0-9.]+)<unit>} from {@code i}; stores the value and returns true if it is there. */
+  private static boolean decimalField(String line, int i, char unit, MatchRuleMetric r, boolean isPct) {
+    int v = afterEquals(line, i);
+    if (v < 0) return false;
+    int e = v;
+    while (e < line.length() && (isDigit(line.charAt(e)) || line.charAt(e) == '.')) e++;
+    if (e == v || e >= line.length() || line.charAt(e) != unit) return false;
+    double d = parseDecimal(line, v, e);
+    if (isPct) r.totalMatchPct = d;
+    else r.matchTimeSec = d;
+    return true;
   }
 
-  private static void extractLongs(String line, MatchRuleMetric r) {
-    Matcher m = LONG_FIELD.matcher(line);
-    while (m.find()) {
-      long v = Long.parseLong(m.group("val"));
-      switch (m.group("key")) {
-        case "Match Candidates" -> r.matchCandidates = v;
-        case "Matches" -> r.matches = v;
-        case "Matches from ageing breaks" -> r.matchesFromAgeingBreaks = v;
-        case "Total Unmatched" -> r.totalUnmatched = v;
+  /** Index after {@code \s*=\s*} at {@code i}, or -1. */
+  private static int afterEquals(String line, int i) {
+    i = skipSpace(line, i);
+    if (i >= line.length() || line.charAt(i) != '=') return -1;
+    return skipSpace(line, i + 1);
+  }
+
+  /**
+   * {@link Double#parseDouble} of {@code [0-9.]+} without the substring. Up to 15 digits the
+   * digits fit a double exactly and one division by an exact power of ten rounds correctly, so
+   * the result is the same; anything else (long or malformed values) goes to parseDouble.
+   */
+  private static double parseDecimal(String line, int from, int to) {
+    long m = 0;
+    int digits = 0, frac = -1;
+    for (int i = from; i < to; i++) {
+      char c = line.charAt(i);
+      if (c == '.') {
+        if (frac >= 0) return Double.parseDouble(line.substring(from, to));
+        frac = 0;
+        continue;
       }
+      m = m * 10 + (c - '0');
+      digits++;
+      if (frac >= 0) frac++;
     }
+    if (digits == 0 || digits > 15) return Double.parseDouble(line.substring(from, to));
+    return frac > 0 ? m / POW10[frac] : m;
+  }
+
+  private static int digitsEnd(String line, int i) {
+    while (i < line.length() && isDigit(line.charAt(i))) i++;
+    return i;
+  }
+
+  private static int skipSpace(String line, int i) {
+    while (i < line.length() && isSpace(line.charAt(i))) i++;
+    return i;
   }
 
-  private static void extractPct(String line, MatchRuleMetric r) {
-    Matcher m = PCT_FIELD.matcher(line);
-    if (m.find()) r.totalMatchPct = Double.parseDouble(m.group("val"));
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /** Regex {@code \s}: [ \t\n\x0B\f\r]. */
+  private static boolean isSpace(char c) {
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+
+  /** {@code dd/MM/yy HH:mm:ss} at the start of the line, followed by whitespace. */
+  private static Long parseTimestampMs(String line, DriverLogTimestamps ts) {
+    if (line.length() < 18 || !digits2(line, 0) || line.charAt(2) != '/' || !digits2(line, 3) || line.charAt(5) != '/'
+        || !digits2(line, 6)) return null;
+    int t = skipSpace(line, 8);
+    if (t == 8 || t + 8 >= line.length() || !digits2(line, t) || line.charAt(t + 2) != ':' || !digits2(line, t + 3)
+        || line.charAt(t + 5) != ':' || !digits2(line, t + 6) || !isSpace(line.charAt(t + 8))) return null;
+    // the pattern takes exactly one space between date and time
+    if (t != 9 || line.charAt(8) != ' ') return null;
+
+    long ms = ts.decode(line, 0);
+    return ms == DriverLogTimestamps.NONE ? null : ms;
   }
 
-  private static void extractTime(String line, MatchRuleMetric r) {
-    Matcher m = TIME_FIELD.matcher(line);
-    if (m.find()) r.matchTimeSec = Double.parseDouble(m.group("val"));
+  private static boolean digits2(String s, int i) {
+    return isDigit(s.charAt(i)) && isDigit(s.charAt(i + 1));
   }
 }
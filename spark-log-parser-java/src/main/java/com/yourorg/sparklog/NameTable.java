@@ -0,0 +1,72 @@
+package com.yourorg.sparklog;
+
+import java.util.Arrays;
+
+/**
+ * Interns names (executor ids, hosts, ...) to dense int indices straight from the parser's
+ * char buffer, so a repeated name costs a hash probe and no String. Indices are assigned in
+ * first-seen order and are only meaningful within one table.
+ */
+final class NameTable {
+  private String[] names = new String[16];
+  private int size;
+
+  private int[] slots = new int[32]; // index + 1; 0 = empty
+  private int[] hashes = new int[16];
+
+  int size() { return size; }
+
+  String name(int index) { return names[index]; }
+
+  int intern(char[] buf, int off, int len) {
+    int h = hash(buf, off, len);
+    int mask = slots.length - 1;
+    for (int i = h & mask; ; i = (i + 1) & mask) {
+      int s = slots[i];
+      if (s == 0) {
+        int idx = add(new String(buf, off, len), h);
+        slots[i] = idx + 1;
+        if (size * 2 > slots.length) rehash();
+        return idx;
+      }
+      if (hashes[s - 1] == h && equals(names[s - 1], buf, off, len)) return s - 1;
+    }
+  }
+
+  int intern(String name) {
+    char[] c = name.toCharArray();
+    return intern(c, 0, c.length);
+  }
+
+  private int add(String name, int h) {
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+      hashes = Arrays.copyOf(hashes, size * 2);
+    }
+    names[size] = name;
+    hashes[size] = h;
+    return size++;
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int idx = 0; idx < size; idx++) {
+      int i = hashes[idx] & mask;
+      while (slots[i] != 0) i = (i + 1) & mask;
+      slots[i] = idx + 1;
+    }
+  }
+
+  private static int hash(char[] buf, int off, int len) {
+    int h = 0;
+    for (int i = off, end = off + len; i < end; i++) h = 31 * h + buf[i];
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean equals(String s, char[] buf, int off, int len) {
+    if (s.length() != len) return false;
+    for (int i = 0; i < len; i++) if (s.charAt(i) != buf[off + i]) return false;
+    return true;
+  }
+}
@@ -0,0 +1,367 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Per-executor and per-host task aggregates for one parse slice.
+ *
+ * Executor ids and hosts are interned to dense indices ({@link NameTable}), and every metric
+ * lives in a primitive array indexed by them. Merging remaps the other slice's indices by
+ * name; {@link #internInOrder} first lays the names out in the order a sequential pass would
+ * have met them, using the seq each was first seen at. Per-stage, per-executor duration moments
+ * are kept on the stage itself ({@link Moments}) and feed {@link #outliers}.
+ */
+final class NodeStats {
+  /** Minimum tasks on a node, and on its peers, in a stage before it can be flagged. */
+  static final int MIN_TASKS = 3;
+  /** Flagged nodes run at least this much slower than their peers (geometric means)... */
+  static final double MIN_SLOWDOWN = 1.5;
+  /** ...and with a Welch t statistic on log durations of at least this. */
+  static final double MIN_T = 3.0;
+
+  final NameTable executorNames = new NameTable();
+  final NameTable hostNames = new NameTable();
+  private int[] executorHost = new int[0]; // executor index -> host index, -1 unknown
+  private long[] executorSeq = new long[0]; // seq each name was first seen at; -1 if before any (checkpoint)
+  private long[] hostSeq = new long[0];
+
+  final Table executors = new Table();
+  final Table hosts = new Table();
+
+  /** Interns the task's executor (and its host); -1 if the event has no executor id. */
+  int executor(SparkEvent.Chars id, SparkEvent.Chars host, long seq) {
+    if (!id.present()) return -1;
+    int n = executorNames.size();
+    int e = executorNames.intern(id.buf, 0, id.len);
+    ensureExecutor(e);
+    if (e == n) executorSeq[e] = seq;
+    if (host.present()) {
+      int hn = hostNames.size();
+      int h = hostNames.intern(host.buf, 0, host.len);
+      ensureHost(h);
+      if (h == hn) hostSeq[h] = seq;
+      executorHost[e] = h;
+    }
+    return e;
+  }
+
+  int hostOf(int executor) { return executor < executorHost.length ? executorHost[executor] : -1; }
+
+  /**
+   * Interns the names of {@code parts} (in file order where seqs tie) ordered by the seq each was
+   * first seen at, so that merging them keeps sequential first-seen order even when a part
+   * holds slices from far apart in the file (pipelined workers).
+   */
+  void internInOrder(List<NodeStats> parts) {
+    record Name(String name, long seq, int part, int index) {}
+    List<Name> hs = new ArrayList<>(), es = new ArrayList<>();
+    for (int pi = 0; pi < parts.size(); pi++) {
+      NodeStats p = parts.get(pi);
+      for (int i = 0; i < p.hostNames.size(); i++) hs.add(new Name(p.hostNames.name(i), p.hostSeq[i], pi, i));
+      for (int i = 0; i < p.executorNames.size(); i++) es.add(new Name(p.executorNames.name(i), p.executorSeq[i], pi, i));
+    }
+    Comparator<Name> order = Comparator.comparingLong(Name::seq).thenComparingInt(Name::part).thenComparingInt(Name::index);
+    hs.sort(order);
+    es.sort(order);
+    for (Name x : hs) {
+      int n = hostNames.size();
+      int h = hostNames.intern(x.name());
+      ensureHost(h);
+      if (h == n) hostSeq[h] = x.seq();
+    }
+    for (Name x : es) {
+      int n = executorNames.size();
+      int e = executorNames.intern(x.name());
+      ensureExecutor(e);
+      if (e == n) executorSeq[e] = x.seq();
+    }
+  }
+
+  /** @return the indices of {@code o}'s executors in this table */
+  int[] mergeFrom(NodeStats o) {
+    int[] h = new int[o.hostNames.size()];
+    for (int i = 0; i < h.length; i++) {
+      int n = hostNames.size();
+      h[i] = hostNames.intern(o.hostNames.name(i));
+      ensureHost(h[i]);
+      if (h[i] == n) hostSeq[h[i]] = o.hostSeq[i];
+    }
+    int[] e = executorRemap(o);
+    for (int i = 0; i < e.length; i++) {
+      int oh = o.hostOf(i);
+      if (oh >= 0) executorHost[e[i]] = h[oh];
+    }
+    executors.mergeFrom(o.executors, e);
+    hosts.mergeFrom(o.hosts, h);
+    return e;
+  }
+
+  private int[] executorRemap(NodeStats o) {
+    int[] e = new int[o.executorNames.size()];
+    for (int i = 0; i < e.length; i++) {
+      int n = executorNames.size();
+      e[i] = executorNames.intern(o.executorNames.name(i));
+      ensureExecutor(e[i]);
+      if (e[i] == n) executorSeq[e[i]] = o.executorSeq[i];
+    }
+    return e;
+  }
+
+  void write(DataOutput out) throws IOException {
+    writeNames(out, hostNames);
+    writeNames(out, executorNames);
+    for (int i = 0; i < executorNames.size(); i++) out.writeInt(hostOf(i));
+    executors.write(out);
+    hosts.write(out);
+  }
+
+  /** Fills an empty instance from {@link #write}; indices come back unchanged. */
+  void read(DataInput in) throws IOException {
+    readNames(in, hostNames);
+    readNames(in, executorNames);
+    ensureHost(hostNames.size() - 1);
+    ensureExecutor(executorNames.size() - 1);
+    for (int i = 0; i < executorNames.size(); i++) executorHost[i] = in.readInt();
+    executors.read(in);
+    hosts.read(in);
+  }
+
+  private static void writeNames(DataOutput out, NameTable t) throws IOException {
+    out.writeInt(t.size());
+    for (int i = 0; i < t.size(); i++) ParseCheckpoint.writeString(out, t.name(i));
+  }
+
+  private static void readNames(DataInput in, NameTable t) throws IOException {
+    for (int i = in.readInt(); i > 0; i--) t.intern(ParseCheckpoint.readString(in));
+  }
+
+  private void ensureExecutor(int e) {
+    if (e < executorHost.length) return;
+    int old = executorHost.length;
+    executorHost = Arrays.copyOf(executorHost, Math.max(e + 1, Math.max(16, old * 2)));
+    Arrays.fill(executorHost, old, executorHost.length, -1);
+    executorSeq = Arrays.copyOf(executorSeq, executorHost.length);
+    Arrays.fill(executorSeq, old, executorSeq.length, -1);
+  }
+
+  private void ensureHost(int h) {
+    if (h < hostSeq.length) return;
+    int old = hostSeq.length;
+    hostSeq = Arrays.copyOf(hostSeq, Math.max(h + 1, Math.max(16, old * 2)));
+    Arrays.fill(hostSeq, old, hostSeq.length, -1);
+  }
+
+  // ---------- per-node totals ----------
+
+  /** Dense per-node columns. */
+  static final class Table {
+    long[] tasks = new long[16];
+    long[] runTimeMs = new long[16];
+    long[] gcTimeMs = new long[16];
+    long[] fetchWaitMs = new long[16];
+    DurationSketch[] durations = new DurationSketch[16];
+    int size;
+
+    void addTask(int i, long durationMs) {
+      ensure(i);
+      tasks[i]++;
+      if (durationMs > 0) durations[i].add(durationMs);
+    }
+
+    void addMetrics(int i, long runTime, long gcTime, long fetchWait) {
+      ensure(i);
+      runTimeMs[i] += runTime;
+      gcTimeMs[i] += gcTime;
+      fetchWaitMs[i] += fetchWait;
+    }
+
+    void mergeFrom(Table o, int[] remap) {
+      for (int j = 0; j < o.size; j++) {
+        int i = remap[j];
+        ensure(i);
+        tasks[i] += o.tasks[j];
+        runTimeMs[i] += o.runTimeMs[j];
+        gcTimeMs[i] += o.gcTimeMs[j];
+        fetchWaitMs[i] += o.fetchWaitMs[j];
+        durations[i].mergeFrom(o.durations[j]);
+      }
+    }
+
+    void write(DataOutput out) throws IOException {
+      out.writeInt(size);
+      for (int i = 0; i < size; i++) {
+        out.writeLong(tasks[i]);
+        out.writeLong(runTimeMs[i]);
+        out.writeLong(gcTimeMs[i]);
+        out.writeLong(fetchWaitMs[i]);
+        durations[i].write(out);
+      }
+    }
+
+    void read(DataInput in) throws IOException {
+      int n = in.readInt();
+      if (n > 0) ensure(n - 1);
+      for (int i = 0; i < n; i++) {
+        tasks[i] = in.readLong();
+        runTimeMs[i] = in.readLong();
+        gcTimeMs[i] = in.readLong();
+        fetchWaitMs[i] = in.readLong();
+        durations[i].read(in);
+      }
+    }
+
+    private void ensure(int i) {
+      if (i >= tasks.length) {
+        int n = Math.max(i + 1, tasks.length * 2);
+        tasks = Arrays.copyOf(tasks, n);
+        runTimeMs = Arrays.copyOf(runTimeMs, n);
+        gcTimeMs = Arrays.copyOf(gcTimeMs, n);
+        fetchWaitMs = Arrays.copyOf(fetchWaitMs, n);
+        durations = Arrays.copyOf(durations, n);
+      }
+      while (size <= i) durations[size++] = new DurationSketch();
+    }
+  }
+
+  // ---------- per-stage moments ----------
+
+  /**
+   * Count, sum and sum of squares of ln(duration) per node, for one stage. Open addressing on
+   * the node index; sized to the nodes that actually ran tasks in the stage. Sums are fixed
+   * point (2^-20), so merged slices add up to exactly what one sequential pass would.
+   */
+  static final class Moments {
+    private static final double SCALE = 1 << 20;
+
+    private int[] keys = new int[8]; // node index + 1; 0 = empty
+    private long[] n = new long[8];
+    private long[] s1 = new long[8];
+    private long[] s2 = new long[8];
+    private int size;
+
+    void add(int node, long durationMs) {
+      double ln = Math.log(durationMs);
+      add(node, 1, Math.round(ln * SCALE), Math.round(ln * ln * SCALE));
+    }
+
+    void add(int node, long count, long sum, long sumSq) {
+      int i = slot(node);
+      if (keys[i] == 0) {
+        keys[i] = node + 1;
+        if (++size * 2 > keys.length) {
+          grow();
+          i = slot(node);
+        }
+      }
+      n[i] += count;
+      s1[i] += sum;
+      s2[i] += sumSq;
+    }
+
+    /** Adds {@code o}, renumbering its nodes through {@code remap}. */
+    void mergeFrom(Moments o, int[] remap) {
+      for (int i = 0; i < o.keys.length; i++) {
+        if (o.keys[i] != 0) add(remap[o.keys[i] - 1], o.n[i], o.s1[i], o.s2[i]);
+      }
+    }
+
+    void write(DataOutput out) throws IOException {
+      out.writeInt(size);
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == 0) continue;
+        out.writeInt(keys[i] - 1);
+        out.writeLong(n[i]);
+        out.writeLong(s1[i]);
+        out.writeLong(s2[i]);
+      }
+    }
+
+    void read(DataInput in) throws IOException {
+      for (int i = in.readInt(); i > 0; i--) add(in.readInt(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    /** A copy with every node index passed through {@code remap}. */
+    Moments renumbered(int[] remap) {
+      Moments m = new Moments();
+      m.mergeFrom(this, remap);
+      return m;
+    }
+
+    /** Executor moments summed per host; executors with no known host are dropped. */
+    Moments byHost(NodeStats ns) {
+      Moments g = new Moments();
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == 0) continue;
+        int h = ns.hostOf(keys[i] - 1);
+        if (h >= 0) g.add(h, n[i], s1[i], s2[i]);
+      }
+      return g;
+    }
+
+    private int slot(int node) {
+      int mask = keys.length - 1;
+      int i = (node * 0x9E3779B9) >>> 16 & mask;
+      while (keys[i] != 0 && keys[i] != node + 1) i = (i + 1) & mask;
+      return i;
+    }
+
+    private void grow() {
+      int[] ok = keys;
+      long[] on = n, o1 = s1, o2 = s2;
+      keys = new int[ok.length * 2];
+      n = new long[ok.length * 2];
+      s1 = new long[ok.length * 2];
+      s2 = new long[ok.length * 2];
+      for (int j = 0; j < ok.length; j++) {
+        if (ok[j] == 0) continue;
+        int i = slot(ok[j] - 1);
+        keys[i] = ok[j];
+        n[i] = on[j];
+        s1[i] = o1[j];
+        s2[i] = o2[j];
+      }
+    }
+  }
+
+  /** A node whose log task durations in one stage are significantly above its peers'. */
+  record Outlier(int node, long tasks, double geoMeanMs, double peerGeoMeanMs, double tStat) {}
+
+  /**
+   * Nodes slower than the rest of the stage: Welch's t-test on ln(duration) of the node against
+   * all other nodes combined, flagged at {@link #MIN_T} with a {@link #MIN_SLOWDOWN} effect size.
+   */
+  static List<Outlier> outliers(Moments m) {
+    List<Outlier> out = new ArrayList<>();
+    if (m.size < 2) return out;
+
+    long nAll = 0, s1All = 0, s2All = 0;
+    for (int i = 0; i < m.keys.length; i++) {
+      if (m.keys[i] == 0) continue;
+      nAll += m.n[i];
+      s1All += m.s1[i];
+      s2All += m.s2[i];
+    }
+
+    for (int i = 0; i < m.keys.length; i++) {
+      if (m.keys[i] == 0) continue;
+      long ne = m.n[i];
+      long no = nAll - ne;
+      if (ne < MIN_TASKS || no < MIN_TASKS) continue;
+
+      double sumE = m.s1[i] / Moments.SCALE, sumO = (s1All - m.s1[i]) / Moments.SCALE;
+      double meanE = sumE / ne;
+      double meanO = sumO / no;
+      if (Math.exp(meanE - meanO) < MIN_SLOWDOWN) continue;
+
+      double varE = Math.max(0, (m.s2[i] / Moments.SCALE - sumE * meanE) / (ne - 1));
+      double varO = Math.max(0, ((s2All - m.s2[i]) / Moments.SCALE - sumO * meanO) / (no - 1));
+      double se = Math.max(1e-9, Math.sqrt(varE / ne + varO / no)); // identical durations: any gap counts
+      double t = (meanE - meanO) / se;
+      if (t < MIN_T) continue;
+
+      out.add(new Outlier(m.keys[i] - 1, ne, Math.exp(meanE), Math.exp(meanO), t));
+    }
+    return out;
+  }
+}
@@ -0,0 +1,124 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.*;
+
+/**
+ * Saved {@link ParseState} of an uncompressed event log up to a line boundary, so the next run
+ * over the same (grown) log only parses the appended bytes.
+ *
+ * Layout: magic, version, offset, next seq, the log's fingerprint, then the state (deflated).
+ * The fingerprint is the CRC32 of the first and of the last 4 KB before the offset; a log that
+ * was replaced or rewritten no longer matches and is parsed from the start. Checkpoints of
+ * another version are ignored the same way.
+ */
+final class ParseCheckpoint {
+  private static final int MAGIC = 0x534C5043; // "SLPC"
+  private static final int VERSION = 6;
+  private static final int FINGERPRINT_BYTES = 4096;
+
+  /** End of the last complete line covered by {@link #state}. */
+  final long offset;
+  /** First seq free for slices parsed after the checkpoint. */
+  final long nextSeq;
+  final ParseState state;
+
+  private ParseCheckpoint(long offset, long nextSeq, ParseState state) {
+    this.offset = offset;
+    this.nextSeq = nextSeq;
+    this.state = state;
+  }
+
+  static void write(Path checkpoint, FileChannel log, long offset, long nextSeq, ParseState st) throws IOException {
+    Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(offset);
+      out.writeLong(nextSeq);
+      out.writeLong(crc(log, 0, Math.min(offset, FINGERPRINT_BYTES)));
+      out.writeLong(crc(log, Math.max(0, offset - FINGERPRINT_BYTES), offset));
+
+      Deflater d = new Deflater(Deflater.BEST_SPEED);
+      try {
+        DeflaterOutputStream z = new DeflaterOutputStream(out, d, 1 << 16);
+        DataOutputStream body = new DataOutputStream(z);
+        st.write(body);
+        body.flush();
+        z.finish();
+      } finally {
+        d.end();
+      }
+    }
+    Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** The checkpoint if it exists, has this version and still matches {@code log}; else null. */
+  static ParseCheckpoint read(Path checkpoint, FileChannel log) throws IOException {
+    if (!Files.isRegularFile(checkpoint)) return null;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint), 1 << 16))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+      long offset = in.readLong();
+      long nextSeq = in.readLong();
+      long head = in.readLong();
+      long tail = in.readLong();
+      if (log.size() < offset
+          || crc(log, 0, Math.min(offset, FINGERPRINT_BYTES)) != head
+          || crc(log, Math.max(0, offset - FINGERPRINT_BYTES), offset) != tail) {
+        return null;
+      }
+
+      Inflater inf = new Inflater();
+      try {
+        DataInputStream body = new DataInputStream(new InflaterInputStream(in, inf, 1 << 16));
+        return new ParseCheckpoint(offset, nextSeq, ParseState.read(body));
+      } finally {
+        inf.end();
+      }
+    } catch (EOFException e) {
+      return null; // truncated write from an interrupted run
+    }
+  }
+
+  private static long crc(FileChannel ch, long from, long to) throws IOException {
+    CRC32 c = new CRC32();
+    ByteBuffer bb = ByteBuffer.allocate((int) (to - from));
+    while (bb.hasRemaining()) if (ch.read(bb, from + bb.position()) < 0) break;
+    bb.flip();
+    c.update(bb);
+    return c.getValue();
+  }
+
+  // ---------- field helpers shared by the state classes ----------
+
+  static void writeString(DataOutput out, String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  static String readString(DataInput in) throws IOException {
+    int n = in.readInt();
+    if (n < 0) return null;
+    byte[] b = new byte[n];
+    in.readFully(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  static void writeLong(DataOutput out, Long v) throws IOException {
+    out.writeBoolean(v != null);
+    if (v != null) out.writeLong(v);
+  }
+
+  static Long readLong(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readLong() : null;
+  }
+}
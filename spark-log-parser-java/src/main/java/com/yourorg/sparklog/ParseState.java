@@ -0,0 +1,867 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Aggregation state for one slice of an event log (the whole file, or one byte range of it).
+ *
+ * Each worker owns its own state, so nothing here is shared or locked. Order-sensitive
+ * writes (app start/end, stage name/times, executor add/remove) are tagged with {@link #seq},
+ * the position in the file of the slice or block being fed. {@link #merge} replays them so the
+ * merged result equals what a single sequential pass over the file would have produced.
+ */
+final class ParseState {
+  static final List<String> CONF_PREFIXES = List.of(
+      "spark.sql.adaptive.",
+      "spark.sql.adaptive.skewJoin.",
+      "spark.sql.shuffle.partitions",
+      "spark.sql.autoBroadcastJoinThreshold",
+      "spark.sql.files.maxPartitionBytes",
+      "spark.sql.join.preferSortMergeJoin",
+      "spark.dynamicAllocation.",
+      "spark.executor.",
+      "spark.sql.parquet.",
+      "spark.sql.catalog.",
+      "spark.sql.iceberg."
+  );
+
+  /** Position of the slice currently being fed; later slices win on merge. */
+  long seq;
+
+  // app-level, last writer wins
+  long appStartSeq = -1, appEndSeq = -1, coresSeq = -1;
+  String appId;
+  Long startTimeMs, endTimeMs;
+  final Map<String, String> sparkConf = new LinkedHashMap<>(); // first-insertion order, like the sequential pass
+  private final Map<String, long[]> confSeqs = new HashMap<>(); // key -> {seq first set, seq last set}
+  Integer executorCores;
+
+  // keyed by LongObjectMap.pack(stageId, attemptId)
+  final LongObjectMap<StageAgg> stages = new LongObjectMap<>();
+  private StageAgg lastStage; // task ends arrive in runs for the same stage
+
+  // SQL executions by id; descriptions can be whole SQL texts
+  static final int MAX_DESCRIPTION_CHARS = 1000;
+  final LongObjectMap<SqlAgg> sqls = new LongObjectMap<>();
+  // SQL plan operators by their first metric's accumulator id (AQE re-posts unchanged operators),
+  // and summed accumulator updates by id; joined when the output is built
+  final LongObjectMap<PlanOp> planOps = new LongObjectMap<>();
+  final LongLongMap accums = new LongLongMap(1024);
+
+  // stage DAG: parent ids per stage id, and jobs by id
+  final Map<Integer, int[]> stageParents = new HashMap<>();
+  final LongObjectMap<JobAgg> jobs = new LongObjectMap<>();
+
+  final NodeStats nodes = new NodeStats();
+  final SlotTimeline slots = new SlotTimeline();
+
+  // executor add/remove in file order: (seq, timestamp, +1/-1); replayed after the merge
+  long[] execSeq = new long[64];
+  long[] execTs = new long[64];
+  byte[] execDelta = new byte[64];
+  int execEvents = 0;
+
+  // Debug counters
+  long seenLines = 0;
+  long seenTaskEnd = 0;
+  long seenTaskEndMissingStage = 0;
+  long seenTaskEndMissingMetrics = 0;
+
+  final EventTypeFilter prefilter = new EventTypeFilter();
+  private final EventLogDecoder decoder = new EventLogDecoder();
+  private final SparkEvent ev = new SparkEvent();
+
+  // mapped input: a line is copied out of the mapping only once the prefilter has kept it,
+  // and very long ones (SQL plans) are decoded in place instead
+  private static final int PEEK_BYTES = 256;
+  private static final int STREAM_LINE_BYTES = 1 << 20;
+  private byte[] lineBuf = new byte[64 << 10];
+
+  // exact-percentile mode only; null otherwise
+  private final DurationSpool spool;
+  private final DurationSpool.Worker durations = new DurationSpool.Worker();
+
+  ParseState(long seq) { this(seq, null); }
+
+  ParseState(long seq, DurationSpool spool) {
+    this.seq = seq;
+    this.spool = spool;
+  }
+
+  /** Called when no more lines will come: hands exact-percentile buffers over to the spool. */
+  void finish() throws IOException {
+    if (spool != null) spool.finish(durations, exactValues());
+  }
+
+  void onLine(byte[] buf, int off, int len) throws IOException {
+    seenLines++;
+    if (ByteLineReader.isBlank(buf, off, len)) return;
+
+    // Cheap byte check first: most lines are events nobody subscribes to.
+    if (prefilter.classify(buf, off, len) == EventType.OTHER) return;
+    if (!decoder.decode(buf, off, len, ev)) return;
+    dispatch(ev);
+  }
+
+  private void dispatch(SparkEvent ev) throws IOException {
+    switch (ev.type) {
+      case APP_START -> onAppStart(ev);
+      case APP_END -> onAppEnd(ev);
+      case ENV_UPDATE -> onEnvUpdate(ev);
+
+      case EXEC_ADDED -> onExec(ev, +1);
+      case EXEC_REMOVED -> onExec(ev, -1);
+
+      case STAGE_SUBMITTED -> onStageSubmitted(ev);
+      case STAGE_COMPLETED -> onStageCompleted(ev);
+
+      case TASK_END -> onTaskEnd(ev);
+
+      case JOB_START -> onJobStart(ev);
+      case JOB_END -> onJobEnd(ev);
+
+      case SQL_START -> onSqlStart(ev);
+      case SQL_END -> onSqlEnd(ev);
+      case SQL_ADAPTIVE, SQL_ADAPTIVE_METRICS -> onPlan(ev);
+      case DRIVER_ACCUM -> onAccums(ev);
+      default -> { /* ignore */ }
+    }
+  }
+
+  /** Line as a slice of a mapped window ({@link MappedLineReader}). */
+  void onLine(ByteBuffer buf, int off, int len) throws IOException {
+    int peek = Math.min(len, PEEK_BYTES);
+    buf.get(off, lineBuf, 0, peek);
+    if (peek < len) {
+      if (!ByteLineReader.isBlank(lineBuf, 0, peek) && prefilter.classify(lineBuf, 0, peek) == EventType.OTHER) {
+        seenLines++;
+        return;
+      }
+      if (len > STREAM_LINE_BYTES) {
+        seenLines++;
+        if (decoder.decode(buf, off, len, ev)) dispatch(ev);
+        return;
+      }
+      if (lineBuf.length < len) lineBuf = Arrays.copyOf(lineBuf, Math.max(len, lineBuf.length * 2));
+      buf.get(off + peek, lineBuf, peek, len - peek);
+    }
+    onLine(lineBuf, 0, len);
+  }
+
+  private void onAppStart(SparkEvent e) {
+    appStartSeq = seq;
+    appId = e.appId;
+    startTimeMs = e.hasTimestamp ? e.timestamp : null;
+  }
+
+  private void onAppEnd(SparkEvent e) {
+    appEndSeq = seq;
+    endTimeMs = e.hasTimestamp ? e.timestamp : null;
+  }
+
+  private void onEnvUpdate(SparkEvent e) {
+    e.sparkProperties.forEach((k, v) -> {
+      if (!keepConf(k)) return;
+      sparkConf.put(k, v);
+      confSeqs.computeIfAbsent(k, x -> new long[] { seq, seq })[1] = seq;
+    });
+
+    if (executorCores == null) {
+      String cores = sparkConf.get("spark.executor.cores");
+      if (cores != null) {
+        try {
+          executorCores = Integer.parseInt(cores.trim());
+          coresSeq = seq;
+        } catch (Exception ignored) {}
+      }
+    }
+  }
+
+  private void onExec(SparkEvent e, int delta) {
+    if (execEvents == execTs.length) {
+      int n = execEvents * 2;
+      execSeq = Arrays.copyOf(execSeq, n);
+      execTs = Arrays.copyOf(execTs, n);
+      execDelta = Arrays.copyOf(execDelta, n);
+    }
+    execSeq[execEvents] = seq;
+    execTs[execEvents] = e.hasTimestamp ? e.timestamp : 0L;
+    execDelta[execEvents++] = (byte) delta;
+  }
+
+  private void onStageSubmitted(SparkEvent e) {
+    if (!e.hasStageInfo) return;
+    parents(e);
+
+    StageAgg a = stage(e.siStageId, e.siAttemptId);
+    a.nameSeq = seq;
+    a.name = e.siName;
+    a.submissionTimeMs = e.siHasSubmission ? e.siSubmissionTimeMs : null;
+    if (e.siHasNumTasks) {
+      a.numTasksSeq = seq;
+      a.numTasks = e.siNumTasks;
+    }
+  }
+
+  private void onStageCompleted(SparkEvent e) {
+    if (!e.hasStageInfo) return;
+    parents(e);
+
+    StageAgg a = stage(e.siStageId, e.siAttemptId);
+    a.nameSeq = seq;
+    a.name = e.siName;
+    a.submissionTimeMs = e.siHasSubmission ? e.siSubmissionTimeMs : null;
+    a.completionSeq = seq;
+    a.completionTimeMs = e.siHasCompletion ? e.siCompletionTimeMs : null;
+    if (a.submissionTimeMs != null && a.completionTimeMs != null) {
+      a.durationSeq = seq;
+      a.durationMs = a.completionTimeMs - a.submissionTimeMs;
+    }
+
+    if (e.siHasNumTasks) {
+      a.numTasksSeq = seq;
+      a.numTasks = e.siNumTasks;
+    }
+  }
+
+  /** A stage's parents are fixed when the stage is created, so any event naming them will do. */
+  private void parents(SparkEvent e) {
+    if (e.siStageIdIsNumber && !stageParents.containsKey(e.siStageId)) stageParents.put(e.siStageId, e.siParentIds.toArray());
+  }
+
+  private void onJobStart(SparkEvent e) {
+    if (!e.hasJobId) return;
+    JobAgg j = job(e.jobId);
+    j.submissionTimeMs = e.hasJobSubmission ? e.jobSubmissionTimeMs : null;
+    j.stageIds = e.jobStageIds.toArray();
+    j.sqlExecutionId = e.hasSqlExecutionId ? e.sqlExecutionId : null;
+
+    // "Stage Infos" also lists stages the job skips, which never get a StageSubmitted
+    int[] sp = e.jobStageParents.a;
+    for (int i = 0; i < e.jobStageParents.size; i += 2 + sp[i + 1]) {
+      if (!stageParents.containsKey(sp[i])) stageParents.put(sp[i], Arrays.copyOfRange(sp, i + 2, i + 2 + sp[i + 1]));
+    }
+  }
+
+  private void onJobEnd(SparkEvent e) {
+    if (!e.hasJobId) return;
+    JobAgg j = job(e.jobId);
+    j.completionTimeMs = e.hasJobCompletion ? e.jobCompletionTimeMs : null;
+    j.result = e.jobResult;
+  }
+
+  private void onSqlStart(SparkEvent e) {
+    if (!e.hasExecutionId) return;
+    SqlAgg q = sql(e.executionId);
+    q.started = true;
+    q.description = truncate(e.description, MAX_DESCRIPTION_CHARS);
+    q.startTimeMs = e.hasTime ? e.time : null;
+    onPlan(e);
+  }
+
+  private void onPlan(SparkEvent e) {
+    if (!e.hasExecutionId || e.planNodes == null) return;
+    for (SparkEvent.PlanNode n : e.planNodes) {
+      long key = n.accumulatorIds.a[0];
+      if (planOps.get(key) == null) planOps.put(key, new PlanOp(e.executionId, n));
+    }
+  }
+
+  private void onAccums(SparkEvent e) {
+    long[] ids = e.accumIds.a, updates = e.accumUpdates.a;
+    for (int i = 0; i < e.accumIds.size; i++) accums.add(ids[i], updates[i]);
+  }
+
+  private void onSqlEnd(SparkEvent e) {
+    if (!e.hasExecutionId) return;
+    SqlAgg q = sql(e.executionId);
+    q.ended = true;
+    q.endTimeMs = e.hasTime ? e.time : null;
+    q.errorMessage = truncate(e.errorMessage, MAX_DESCRIPTION_CHARS);
+  }
+
+  private SqlAgg sql(long executionId) {
+    return sqls.computeIfAbsent(executionId, k -> new SqlAgg(executionId));
+  }
+
+  private static String truncate(String s, int max) {
+    return s == null || s.length() <= max ? s : s.substring(0, max);
+  }
+
+  private JobAgg job(int jobId) {
+    return jobs.computeIfAbsent(jobId, k -> new JobAgg(jobId));
+  }
+
+  // Spark 3.5.x TaskEnd: Stage ID is usually TOP-LEVEL, not in "Stage Info".
+  private void onTaskEnd(SparkEvent e) throws IOException {
+    seenTaskEnd++;
+    onAccums(e);
+
+    int stageId, attemptId;
+    if (e.hasStageId && e.hasAttemptId) {
+      stageId = e.stageId;
+      attemptId = e.attemptId;
+    } else if (e.siStageIdIsNumber && e.siAttemptIdIsNumber) {
+      stageId = e.siStageId;
+      attemptId = e.siAttemptId;
+    } else {
+      seenTaskEndMissingStage++;
+      return;
+    }
+
+    StageAgg a = stage(stageId, attemptId);
+
+    long launch = e.launchTimeMs;
+    long finish = e.finishTimeMs;
+    long taskDur = (launch > 0 && finish > 0) ? (finish - launch) : 0L;
+    if (taskDur > 0) {
+      slots.add(launch, finish);
+      a.taskTimeMs += taskDur;
+      a.taskDurations.add(taskDur);
+      if (spool != null && spool.add(durations, a.exactDurations, taskDur)) spillDurations();
+    }
+
+    int exec = nodes.executor(e.executorId, e.host, seq);
+    int host = exec >= 0 ? nodes.hostOf(exec) : -1;
+    if (exec >= 0) {
+      nodes.executors.addTask(exec, taskDur);
+      if (taskDur > 0) a.byExecutor.add(exec, taskDur);
+    }
+    if (host >= 0) nodes.hosts.addTask(host, taskDur);
+
+    if (!e.hasTaskMetrics) {
+      seenTaskEndMissingMetrics++;
+      return;
+    }
+
+    if (exec >= 0) nodes.executors.addMetrics(exec, e.executorRunTimeMs, e.gcTimeMs, e.fetchWaitTimeMs);
+    if (host >= 0) nodes.hosts.addMetrics(host, e.executorRunTimeMs, e.gcTimeMs, e.fetchWaitTimeMs);
+
+    a.executorRunTimeMs += e.executorRunTimeMs;
+    a.gcTimeMs += e.gcTimeMs;
+
+    a.spillMemBytes += e.memoryBytesSpilled;
+    a.spillDiskBytes += e.diskBytesSpilled;
+
+    a.shuffleReadBytes += e.remoteBytesRead + e.localBytesRead;
+    a.shuffleWriteBytes += e.shuffleBytesWritten;
+  }
+
+  private StageAgg stage(int stageId, int attemptId) {
+    StageAgg a = lastStage;
+    if (a != null && a.stageId == stageId && a.attemptId == attemptId) return a;
+    a = stages.computeIfAbsent(LongObjectMap.pack(stageId, attemptId), k -> new StageAgg(stageId, attemptId, spool != null));
+    lastStage = a;
+    return a;
+  }
+
+  private void spillDurations() throws IOException {
+    spool.spill(durations, exactValues());
+  }
+
+  private List<DurationSpool.Values> exactValues() {
+    List<DurationSpool.Values> vs = new ArrayList<>(stages.size());
+    for (StageAgg a : stages.values()) vs.add(a.exactDurations);
+    return vs;
+  }
+
+  // ---------- merge ----------
+
+  /**
+   * Folds the given states into one. File order is recovered from the seq tags. The parts are
+   * finished first, and the result is finished too, so exact-percentile buffers that no longer
+   * fit the spool's budget go to disk instead of piling up in the merged state.
+   */
+  static ParseState merge(List<ParseState> parts) throws IOException {
+    for (ParseState p : parts) p.finish();
+    if (parts.size() == 1) return parts.get(0);
+
+    ParseState m = new ParseState(-1, parts.get(0).spool);
+    List<NodeStats> nodes = new ArrayList<>(parts.size());
+    for (ParseState p : parts) nodes.add(p.nodes);
+    m.nodes.internInOrder(nodes);
+    for (ParseState p : parts) m.mergeFrom(p);
+    m.finish();
+
+    m.mergeConf(parts);
+
+    // executor events: stable k-way order by (seq, position within its part)
+    List<long[]> order = new ArrayList<>();
+    for (int pi = 0; pi < parts.size(); pi++) {
+      ParseState p = parts.get(pi);
+      for (int i = 0; i < p.execEvents; i++) order.add(new long[] { p.execSeq[i], pi, i });
+    }
+    order.sort(Comparator.<long[]>comparingLong(x -> x[0]).thenComparingLong(x -> x[1]).thenComparingLong(x -> x[2]));
+    for (long[] o : order) {
+      ParseState p = parts.get((int) o[1]);
+      int i = (int) o[2];
+      m.appendExec(p.execSeq[i], p.execTs[i], p.execDelta[i]);
+    }
+    return m;
+  }
+
+  /**
+   * Spark properties as the sequential pass would have them: each key takes the value set last
+   * (highest seq) and sits where it was first set (lowest seq, then its part's insertion order).
+   */
+  private void mergeConf(List<ParseState> parts) {
+    record Key(String key, long firstSeq, int part, int pos) {}
+    Map<String, Key> first = new HashMap<>();
+    Map<String, Long> lastSeq = new HashMap<>();
+    for (int pi = 0; pi < parts.size(); pi++) {
+      ParseState p = parts.get(pi);
+      int pos = 0;
+      for (Map.Entry<String, String> e : p.sparkConf.entrySet()) {
+        long[] sq = p.confSeqs.get(e.getKey());
+        Key k = new Key(e.getKey(), sq[0], pi, pos++);
+        first.merge(e.getKey(), k, (a, b) -> b.firstSeq < a.firstSeq ? b : a);
+        Long last = lastSeq.get(e.getKey());
+        if (last == null || sq[1] >= last) {
+          lastSeq.put(e.getKey(), sq[1]);
+          sparkConf.put(e.getKey(), e.getValue());
+        }
+      }
+    }
+    List<Key> order = new ArrayList<>(first.values());
+    order.sort(Comparator.comparingLong(Key::firstSeq).thenComparingInt(Key::part).thenComparingInt(Key::pos));
+    Map<String, String> values = new HashMap<>(sparkConf);
+    sparkConf.clear();
+    for (Key k : order) {
+      sparkConf.put(k.key(), values.get(k.key()));
+      confSeqs.put(k.key(), new long[] { k.firstSeq(), lastSeq.get(k.key()) });
+    }
+  }
+
+  private void mergeFrom(ParseState p) {
+    if (p.appStartSeq >= appStartSeq && p.appStartSeq >= 0) {
+      appStartSeq = p.appStartSeq;
+      appId = p.appId;
+      startTimeMs = p.startTimeMs;
+    }
+    if (p.appEndSeq >= appEndSeq && p.appEndSeq >= 0) {
+      appEndSeq = p.appEndSeq;
+      endTimeMs = p.endTimeMs;
+    }
+    if (p.executorCores != null && (executorCores == null || p.coresSeq < coresSeq)) {
+      executorCores = p.executorCores;
+      coresSeq = p.coresSeq;
+    }
+
+    // executor indices differ per slice; stage moments are renumbered into this state's
+    int[] execRemap = nodes.mergeFrom(p.nodes);
+    for (StageAgg s : p.stages.values()) {
+      long k = LongObjectMap.pack(s.stageId, s.attemptId);
+      StageAgg a = stages.get(k);
+      if (a == null) {
+        s.byExecutor = s.byExecutor.renumbered(execRemap);
+        stages.put(k, s);
+      } else {
+        a.mergeFrom(s, execRemap);
+      }
+    }
+
+    p.stageParents.forEach(stageParents::putIfAbsent);
+    for (JobAgg j : p.jobs.values()) {
+      JobAgg a = jobs.get(j.jobId);
+      if (a == null) jobs.put(j.jobId, j);
+      else a.mergeFrom(j);
+    }
+    for (SqlAgg q : p.sqls.values()) {
+      SqlAgg a = sqls.get(q.executionId);
+      if (a == null) sqls.put(q.executionId, q);
+      else a.mergeFrom(q);
+    }
+    for (PlanOp o : p.planOps.values()) {
+      if (planOps.get(o.accumulatorIds[0]) == null) planOps.put(o.accumulatorIds[0], o);
+    }
+    accums.mergeFrom(p.accums);
+
+    seenLines += p.seenLines;
+    seenTaskEnd += p.seenTaskEnd;
+    seenTaskEndMissingStage += p.seenTaskEndMissingStage;
+    seenTaskEndMissingMetrics += p.seenTaskEndMissingMetrics;
+    prefilter.mergeFrom(p.prefilter);
+    slots.mergeFrom(p.slots);
+  }
+
+  private void appendExec(long s, long ts, byte delta) {
+    if (execEvents == execTs.length) {
+      int n = execEvents * 2;
+      execSeq = Arrays.copyOf(execSeq, n);
+      execTs = Arrays.copyOf(execTs, n);
+      execDelta = Arrays.copyOf(execDelta, n);
+    }
+    execSeq[execEvents] = s;
+    execTs[execEvents] = ts;
+    execDelta[execEvents++] = delta;
+  }
+
+  // ---------- checkpoint ----------
+
+  /** Everything except the exact-percentile buffers, which live in temp files for one run only. */
+  void write(DataOutput out) throws IOException {
+    if (spool != null) throw new IllegalStateException("exact-percentile state cannot be checkpointed");
+
+    out.writeLong(appStartSeq);
+    out.writeLong(appEndSeq);
+    out.writeLong(coresSeq);
+    ParseCheckpoint.writeString(out, appId);
+    ParseCheckpoint.writeLong(out, startTimeMs);
+    ParseCheckpoint.writeLong(out, endTimeMs);
+    out.writeInt(sparkConf.size());
+    for (Map.Entry<String, String> e : sparkConf.entrySet()) {
+      ParseCheckpoint.writeString(out, e.getKey());
+      ParseCheckpoint.writeString(out, e.getValue());
+      long[] sq = confSeqs.get(e.getKey());
+      out.writeLong(sq[0]);
+      out.writeLong(sq[1]);
+    }
+    ParseCheckpoint.writeLong(out, executorCores == null ? null : (long) executorCores);
+
+    List<StageAgg> all = stages.values();
+    out.writeInt(all.size());
+    for (StageAgg a : all) a.write(out);
+
+    out.writeInt(execEvents);
+    for (int i = 0; i < execEvents; i++) {
+      out.writeLong(execSeq[i]);
+      out.writeLong(execTs[i]);
+      out.writeByte(execDelta[i]);
+    }
+
+    out.writeLong(seenLines);
+    out.writeLong(seenTaskEnd);
+    out.writeLong(seenTaskEndMissingStage);
+    out.writeLong(seenTaskEndMissingMetrics);
+    prefilter.write(out);
+    nodes.write(out);
+    slots.write(out);
+
+    out.writeInt(stageParents.size());
+    for (Map.Entry<Integer, int[]> e : stageParents.entrySet()) {
+      out.writeInt(e.getKey());
+      writeInts(out, e.getValue());
+    }
+    List<JobAgg> js = jobs.values();
+    out.writeInt(js.size());
+    for (JobAgg j : js) j.write(out);
+    List<SqlAgg> qs = sqls.values();
+    out.writeInt(qs.size());
+    for (SqlAgg q : qs) q.write(out);
+    List<PlanOp> ops = planOps.values();
+    out.writeInt(ops.size());
+    for (PlanOp o : ops) o.write(out);
+    accums.write(out);
+  }
+
+  /** A state to merge with, not to feed: its own seq is unset. */
+  static ParseState read(DataInput in) throws IOException {
+    ParseState st = new ParseState(-1);
+    st.appStartSeq = in.readLong();
+    st.appEndSeq = in.readLong();
+    st.coresSeq = in.readLong();
+    st.appId = ParseCheckpoint.readString(in);
+    st.startTimeMs = ParseCheckpoint.readLong(in);
+    st.endTimeMs = ParseCheckpoint.readLong(in);
+    for (int i = in.readInt(); i > 0; i--) {
+      String k = ParseCheckpoint.readString(in);
+      st.sparkConf.put(k, ParseCheckpoint.readString(in));
+      st.confSeqs.put(k, new long[] { in.readLong(), in.readLong() });
+    }
+    Long cores = ParseCheckpoint.readLong(in);
+    st.executorCores = cores == null ? null : cores.intValue();
+
+    for (int i = in.readInt(); i > 0; i--) {
+      StageAgg a = new StageAgg(in.readInt(), in.readInt(), false);
+      a.read(in);
+      st.stages.put(LongObjectMap.pack(a.stageId, a.attemptId), a);
+    }
+
+    for (int i = in.readInt(); i > 0; i--) st.appendExec(in.readLong(), in.readLong(), in.readByte());
+
+    st.seenLines = in.readLong();
+    st.seenTaskEnd = in.readLong();
+    st.seenTaskEndMissingStage = in.readLong();
+    st.seenTaskEndMissingMetrics = in.readLong();
+    st.prefilter.read(in);
+    st.nodes.read(in);
+    st.slots.read(in);
+
+    for (int i = in.readInt(); i > 0; i--) st.stageParents.put(in.readInt(), readInts(in));
+    for (int i = in.readInt(); i > 0; i--) {
+      JobAgg j = new JobAgg(in.readInt());
+      j.read(in);
+      st.jobs.put(j.jobId, j);
+    }
+    for (int i = in.readInt(); i > 0; i--) {
+      SqlAgg q = new SqlAgg(in.readLong());
+      q.read(in);
+      st.sqls.put(q.executionId, q);
+    }
+    for (int i = in.readInt(); i > 0; i--) {
+      PlanOp o = PlanOp.read(in);
+      st.planOps.put(o.accumulatorIds[0], o);
+    }
+    st.accums.read(in);
+    return st;
+  }
+
+  // ---------- helpers ----------
+
+  static void writeInts(DataOutput out, int[] a) throws IOException {
+    out.writeInt(a == null ? -1 : a.length);
+    if (a != null) for (int v : a) out.writeInt(v);
+  }
+
+  static int[] readInts(DataInput in) throws IOException {
+    int n = in.readInt();
+    if (n < 0) return null;
+    int[] a = new int[n];
+    for (int i = 0; i < n; i++) a[i] = in.readInt();
+    return a;
+  }
+
+  static boolean keepConf(String k) {
+    for (String p : CONF_PREFIXES) if (k.startsWith(p)) return true;
+    return false;
+  }
+
+  // ---------- reducers ----------
+
+  static final class StageAgg {
+    final int stageId, attemptId;
+    String name;
+
+    Long submissionTimeMs, completionTimeMs, durationMs;
+    long numTasks;
+
+    // seq of the last write to each group of stage-info fields
+    long nameSeq = -1, completionSeq = -1, durationSeq = -1, numTasksSeq = -1;
+
+    long executorRunTimeMs, gcTimeMs;
+    long shuffleReadBytes, shuffleWriteBytes;
+    long spillMemBytes, spillDiskBytes;
+    long taskTimeMs; // task wall time, launch to finish
+
+    final DurationSketch taskDurations = new DurationSketch();
+    final DurationSpool.Values exactDurations; // exact-percentile mode only
+    NodeStats.Moments byExecutor = new NodeStats.Moments();
+
+    StageAgg(int stageId, int attemptId, boolean exact) {
+      this.stageId = stageId;
+      this.attemptId = attemptId;
+      this.exactDurations = exact ? new DurationSpool.Values() : null;
+    }
+
+    /** Ids first, so {@link ParseState#read} can construct the stage before {@link #read}. */
+    void write(DataOutput out) throws IOException {
+      out.writeInt(stageId);
+      out.writeInt(attemptId);
+      ParseCheckpoint.writeString(out, name);
+      ParseCheckpoint.writeLong(out, submissionTimeMs);
+      ParseCheckpoint.writeLong(out, completionTimeMs);
+      ParseCheckpoint.writeLong(out, durationMs);
+      out.writeLong(numTasks);
+      out.writeLong(nameSeq);
+      out.writeLong(completionSeq);
+      out.writeLong(durationSeq);
+      out.writeLong(numTasksSeq);
+      out.writeLong(executorRunTimeMs);
+      out.writeLong(gcTimeMs);
+      out.writeLong(shuffleReadBytes);
+      out.writeLong(shuffleWriteBytes);
+      out.writeLong(spillMemBytes);
+      out.writeLong(spillDiskBytes);
+      out.writeLong(taskTimeMs);
+      taskDurations.write(out);
+      byExecutor.write(out);
+    }
+
+    void read(DataInput in) throws IOException {
+      name = ParseCheckpoint.readString(in);
+      submissionTimeMs = ParseCheckpoint.readLong(in);
+      completionTimeMs = ParseCheckpoint.readLong(in);
+      durationMs = ParseCheckpoint.readLong(in);
+      numTasks = in.readLong();
+      nameSeq = in.readLong();
+      completionSeq = in.readLong();
+      durationSeq = in.readLong();
+      numTasksSeq = in.readLong();
+      executorRunTimeMs = in.readLong();
+      gcTimeMs = in.readLong();
+      shuffleReadBytes = in.readLong();
+      shuffleWriteBytes = in.readLong();
+      spillMemBytes = in.readLong();
+      spillDiskBytes = in.readLong();
+      taskTimeMs = in.readLong();
+      taskDurations.read(in);
+      byExecutor.read(in);
+    }
+
+    void mergeFrom(StageAgg o, int[] execRemap) {
+      if (o.nameSeq >= nameSeq && o.nameSeq >= 0) {
+        nameSeq = o.nameSeq;
+        name = o.name;
+        submissionTimeMs = o.submissionTimeMs;
+      }
+      if (o.completionSeq >= completionSeq && o.completionSeq >= 0) {
+        completionSeq = o.completionSeq;
+        completionTimeMs = o.completionTimeMs;
+      }
+      if (o.durationSeq >= durationSeq && o.durationSeq >= 0) {
+        durationSeq = o.durationSeq;
+        durationMs = o.durationMs;
+      }
+      if (o.numTasksSeq >= numTasksSeq && o.numTasksSeq >= 0) {
+        numTasksSeq = o.numTasksSeq;
+        numTasks = o.numTasks;
+      }
+
+      executorRunTimeMs += o.executorRunTimeMs;
+      gcTimeMs += o.gcTimeMs;
+      shuffleReadBytes += o.shuffleReadBytes;
+      shuffleWriteBytes += o.shuffleWriteBytes;
+      spillMemBytes += o.spillMemBytes;
+      spillDiskBytes += o.spillDiskBytes;
+      taskTimeMs += o.taskTimeMs;
+
+      taskDurations.mergeFrom(o.taskDurations);
+      if (exactDurations != null && o.exactDurations != null) exactDurations.mergeFrom(o.exactDurations);
+      byExecutor.mergeFrom(o.byExecutor, execRemap);
+    }
+  }
+
+  /** JobStart and JobEnd each happen once per job, so merging just takes whichever side has them. */
+  static final class JobAgg {
+    final int jobId;
+    Long submissionTimeMs, completionTimeMs;
+    String result;
+    int[] stageIds;
+    Long sqlExecutionId;
+
+    JobAgg(int jobId) { this.jobId = jobId; }
+
+    void write(DataOutput out) throws IOException {
+      out.writeInt(jobId);
+      ParseCheckpoint.writeLong(out, submissionTimeMs);
+      ParseCheckpoint.writeLong(out, completionTimeMs);
+      ParseCheckpoint.writeString(out, result);
+      writeInts(out, stageIds);
+      ParseCheckpoint.writeLong(out, sqlExecutionId);
+    }
+
+    void read(DataInput in) throws IOException {
+      submissionTimeMs = ParseCheckpoint.readLong(in);
+      completionTimeMs = ParseCheckpoint.readLong(in);
+      result = ParseCheckpoint.readString(in);
+      stageIds = readInts(in);
+      sqlExecutionId = ParseCheckpoint.readLong(in);
+    }
+
+    void mergeFrom(JobAgg o) {
+      if (o.stageIds != null) {
+        submissionTimeMs = o.submissionTimeMs;
+        stageIds = o.stageIds;
+        sqlExecutionId = o.sqlExecutionId;
+      }
+      if (o.completionTimeMs != null || o.result != null) {
+        completionTimeMs = o.completionTimeMs;
+        result = o.result;
+      }
+    }
+  }
+
+  /** Start and end of one SQL execution; like jobs, each side comes from a single event. */
+  static final class SqlAgg {
+    final long executionId;
+    boolean started, ended;
+    String description;
+    Long startTimeMs, endTimeMs;
+    String errorMessage;
+
+    SqlAgg(long executionId) { this.executionId = executionId; }
+
+    void write(DataOutput out) throws IOException {
+      out.writeLong(executionId);
+      out.writeBoolean(started);
+      out.writeBoolean(ended);
+      ParseCheckpoint.writeString(out, description);
+      ParseCheckpoint.writeLong(out, startTimeMs);
+      ParseCheckpoint.writeLong(out, endTimeMs);
+      ParseCheckpoint.writeString(out, errorMessage);
+    }
+
+    void read(DataInput in) throws IOException {
+      started = in.readBoolean();
+      ended = in.readBoolean();
+      description = ParseCheckpoint.readString(in);
+      startTimeMs = ParseCheckpoint.readLong(in);
+      endTimeMs = ParseCheckpoint.readLong(in);
+      errorMessage = ParseCheckpoint.readString(in);
+    }
+
+    void mergeFrom(SqlAgg o) {
+      if (o.started) {
+        started = true;
+        description = o.description;
+        startTimeMs = o.startTimeMs;
+      }
+      if (o.ended) {
+        ended = true;
+        endTimeMs = o.endTimeMs;
+        errorMessage = o.errorMessage;
+      }
+    }
+  }
+
+  /** One SQL plan operator with metrics; values live in {@link #accums}. */
+  static final class PlanOp {
+    final long executionId;
+    final String nodeName, simpleString;
+    final String[] metricNames, metricTypes;
+    final long[] accumulatorIds;
+
+    PlanOp(long executionId, SparkEvent.PlanNode n) {
+      this(executionId, n.nodeName, n.simpleString, n.metricNames.toArray(new String[0]), n.metricTypes.toArray(new String[0]),
+          Arrays.copyOf(n.accumulatorIds.a, n.accumulatorIds.size));
+    }
+
+    private PlanOp(long executionId, String nodeName, String simpleString, String[] metricNames, String[] metricTypes, long[] accumulatorIds) {
+      this.executionId = executionId;
+      this.nodeName = nodeName;
+      this.simpleString = simpleString;
+      this.metricNames = metricNames;
+      this.metricTypes = metricTypes;
+      this.accumulatorIds = accumulatorIds;
+    }
+
+    void write(DataOutput out) throws IOException {
+      out.writeLong(executionId);
+      ParseCheckpoint.writeString(out, nodeName);
+      ParseCheckpoint.writeString(out, simpleString);
+      out.writeInt(accumulatorIds.length);
+      for (int i = 0; i < accumulatorIds.length; i++) {
+        ParseCheckpoint.writeString(out, metricNames[i]);
+        ParseCheckpoint.writeString(out, metricTypes[i]);
+        out.writeLong(accumulatorIds[i]);
+      }
+    }
+
+    static PlanOp read(DataInput in) throws IOException {
+      long executionId = in.readLong();
+      String nodeName = ParseCheckpoint.readString(in);
+      String simpleString = ParseCheckpoint.readString(in);
+      int n = in.readInt();
+      String[] names = new String[n], types = new String[n];
+      long[] ids = new long[n];
+      for (int i = 0; i < n; i++) {
+        names[i] = ParseCheckpoint.readString(in);
+        types[i] = ParseCheckpoint.readString(in);
+        ids[i] = in.readLong();
+      }
+      return new PlanOp(executionId, nodeName, simpleString, names, types, ids);
+    }
+  }
+}
@@ -0,0 +1,987 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Versioned binary form of {@link CompactParsedLog} ({@code parsed.bin}), for fast reloads and diffs.
+ *
+ * Layout: magic, version, a table of contents (section id, offset, length), then the sections.
+ * Every string (stage names, conf keys and values, rule names, node ids) is stored once in the
+ * dictionary section and referenced by varint index. Stages and node stats are columnar: one
+ * run per field over all rows, ids and timestamps delta-encoded, integers as zigzag varints.
+ *
+ * {@link #open} reads only the table of contents. Each accessor decodes its section on first
+ * use, so e.g. a diff that needs conf and rules never touches the stage columns. Unknown
+ * section ids are skipped; another version is rejected.
+ */
+public final class ParsedLogSnapshot {
+  private static final int MAGIC = 0x534C5042; // "SLPB"
+  public static final int VERSION = 1;
+
+  private static final int DICT = 1, APP = 2, CONF = 3, STAGES = 4, EXECUTOR_STATS = 5, HOST_STATS = 6,
+      BAD_NODES = 7, MATCH_RULES = 8, CORRELATIONS = 9, INSIGHTS = 10, UTILIZATION = 11,
+      SLOTS = 12, DAG = 13, SQL = 14, SQL_OPERATORS = 15;
+
+  private final Path file;
+  private final Map<Integer, long[]> toc = new HashMap<>(); // id -> {offset, length}
+
+  private String[] dict;
+  private CompactParsedLog app; // header fields + executors
+  private Map<String, String> sparkConf;
+  private List<CompactParsedLog.StageSummary> stages;
+  private List<CompactParsedLog.NodeSummary> executorStats, hostStats;
+  private List<CompactParsedLog.BadNode> badNodes;
+  private List<MatchRuleMetric> matchRules;
+  private List<RuleStageCorrelation> correlations;
+  private CompactParsedLog.RunInsights runInsights;
+  private UtilizationScore utilization;
+  private boolean utilizationRead;
+  private CompactParsedLog.SlotOccupancy slotOccupancy;
+  private boolean slotsRead;
+  private List<CompactParsedLog.JobSummary> jobs;
+  private CompactParsedLog.CriticalPath criticalPath;
+  private List<CompactParsedLog.SqlExecution> sqlExecutions;
+
+  private ParsedLogSnapshot(Path file) {
+    this.file = file;
+  }
+
+  // ---------- writing ----------
+
+  public static void write(CompactParsedLog p, Path target) throws IOException {
+    NameTable names = new NameTable();
+    Map<Integer, Buf> sections = new LinkedHashMap<>();
+    sections.put(APP, app(p, names));
+    sections.put(CONF, conf(p.sparkConf, names));
+    sections.put(STAGES, stages(p.stages, names));
+    sections.put(EXECUTOR_STATS, nodes(p.executorStats, names));
+    sections.put(HOST_STATS, nodes(p.hostStats, names));
+    sections.put(BAD_NODES, badNodes(p.badNodes, names));
+    sections.put(MATCH_RULES, matchRules(p.matchRules, names));
+    sections.put(CORRELATIONS, correlations(p.ruleStageCorrelations, names));
+    sections.put(INSIGHTS, insights(p.runInsights, names));
+    if (p.utilization != null) sections.put(UTILIZATION, utilization(p.utilization, names));
+    if (p.slotOccupancy != null) sections.put(SLOTS, slots(p.slotOccupancy));
+    sections.put(DAG, dag(p, names));
+    sections.put(SQL, sql(p.sqlExecutions, names));
+    sections.put(SQL_OPERATORS, sqlOperators(p.sqlExecutions, names));
+
+    Buf d = new Buf();
+    d.varint(names.size());
+    for (int i = 0; i < names.size(); i++) {
+      byte[] b = names.name(i).getBytes(StandardCharsets.UTF_8);
+      d.varint(b.length);
+      d.write(b, 0, b.length);
+    }
+    Map<Integer, Buf> all = new LinkedHashMap<>();
+    all.put(DICT, d);
+    all.putAll(sections);
+
+    long offset = 12 + 16L * all.size();
+    Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(all.size());
+      for (Map.Entry<Integer, Buf> e : all.entrySet()) {
+        out.writeInt(e.getKey());
+        out.writeLong(offset);
+        out.writeInt(e.getValue().size());
+        offset += e.getValue().size();
+      }
+      for (Buf b : all.values()) b.writeTo(out);
+    }
+    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static Buf app(CompactParsedLog p, NameTable names) {
+    Buf b = new Buf();
+    b.string(p.appId, names);
+    b.optLong(p.startTimeMs);
+    b.optLong(p.endTimeMs);
+    b.optLong(p.durationMs);
+    b.string(p.status, names);
+    CompactParsedLog.ExecutorSummary e = p.executors;
+    b.zigzag(e.maxExecutors);
+    b.zigzag(e.totalAdded);
+    b.zigzag(e.totalRemoved);
+    b.optLong(e.executorCores == null ? null : e.executorCores.longValue());
+    b.optDouble(e.avgExecutors);
+    return b;
+  }
+
+  private static Buf conf(Map<String, String> conf, NameTable names) {
+    Buf b = new Buf();
+    b.varint(conf.size());
+    for (Map.Entry<String, String> e : conf.entrySet()) {
+      b.string(e.getKey(), names);
+      b.string(e.getValue(), names);
+    }
+    return b;
+  }
+
+  private static Buf stages(List<CompactParsedLog.StageSummary> ss, NameTable names) {
+    Buf b = new Buf();
+    b.varint(ss.size());
+    b.longs(ss, s -> s.stageId, true);
+    b.longs(ss, s -> s.attemptId, false);
+    for (CompactParsedLog.StageSummary s : ss) b.string(s.name, names);
+    b.optLongs(ss, s -> s.submissionTimeMs, true);
+    b.optLongs(ss, s -> s.completionTimeMs, true);
+    b.optLongs(ss, s -> s.durationMs, false);
+    b.longs(ss, s -> s.numTasks, false);
+    b.longs(ss, s -> s.executorRunTimeMs, false);
+    b.longs(ss, s -> s.gcTimeMs, false);
+    b.longs(ss, s -> s.shuffleReadBytes, false);
+    b.longs(ss, s -> s.shuffleWriteBytes, false);
+    b.longs(ss, s -> s.spillMemBytes, false);
+    b.longs(ss, s -> s.spillDiskBytes, false);
+    b.longs(ss, s -> s.maxTaskDurationMs, false);
+    b.doubles(ss, s -> s.p50TaskDurationMs);
+    b.doubles(ss, s -> s.p95TaskDurationMs);
+    b.doubles(ss, s -> s.p99TaskDurationMs);
+    b.doubles(ss, s -> s.p999TaskDurationMs);
+    b.doubles(ss, s -> s.maxOverP50);
+    b.doubles(ss, s -> s.stragglerPct);
+    return b;
+  }
+
+  private static Buf nodes(List<CompactParsedLog.NodeSummary> ns, NameTable names) {
+    Buf b = new Buf();
+    b.varint(ns.size());
+    for (CompactParsedLog.NodeSummary n : ns) b.string(n.id, names);
+    for (CompactParsedLog.NodeSummary n : ns) b.string(n.host, names);
+    b.longs(ns, n -> n.tasks, false);
+    b.longs(ns, n -> n.executorRunTimeMs, false);
+    b.longs(ns, n -> n.gcTimeMs, false);
+    b.longs(ns, n -> n.shuffleFetchWaitMs, false);
+    b.doubles(ns, n -> n.p50TaskDurationMs);
+    b.doubles(ns, n -> n.p95TaskDurationMs);
+    b.longs(ns, n -> n.maxTaskDurationMs, false);
+    return b;
+  }
+
+  private static Buf badNodes(List<CompactParsedLog.BadNode> bs, NameTable names) {
+    Buf b = new Buf();
+    b.varint(bs.size());
+    for (CompactParsedLog.BadNode n : bs) {
+      b.string(n.kind, names);
+      b.string(n.id, names);
+      b.zigzag(n.stageId);
+      b.zigzag(n.attemptId);
+      b.zigzag(n.tasks);
+      b.dbl(n.geoMeanTaskDurationMs);
+      b.dbl(n.peerGeoMeanTaskDurationMs);
+      b.dbl(n.slowdown);
+      b.dbl(n.tStat);
+    }
+    return b;
+  }
+
+  private static Buf matchRules(List<MatchRuleMetric> rs, NameTable names) {
+    Buf b = new Buf();
+    b.varint(rs.size());
+    for (MatchRuleMetric r : rs) {
+      b.string(r.rule, names);
+      b.optLong(r.matchCandidates);
+      b.optLong(r.matches);
+      b.optLong(r.matchesFromAgeingBreaks);
+      b.optDouble(r.totalMatchPct);
+      b.optLong(r.totalUnmatched);
+      b.optDouble(r.matchTimeSec);
+      b.optLong(r.timestampMs);
+      b.optLong(r.jobId == null ? null : r.jobId.longValue());
+    }
+    return b;
+  }
+
+  private static Buf correlations(List<RuleStageCorrelation> cs, NameTable names) {
+    Buf b = new Buf();
+    b.varint(cs.size());
+    for (RuleStageCorrelation c : cs) {
+      b.string(c.rule, names);
+      b.optLong(c.ruleEndTimeMs);
+      b.optLong(c.ruleStartTimeMs);
+      b.optDouble(c.ruleMatchTimeSec);
+      b.varint(c.overlaps.size());
+      for (RuleStageCorrelation.Overlap o : c.overlaps) {
+        b.zigzag(o.stageId);
+        b.zigzag(o.attemptId);
+        b.string(o.stageName, names);
+        b.optLong(o.stageStartMs);
+        b.optLong(o.stageEndMs);
+        b.zigzag(o.overlapMs);
+        b.dbl(o.overlapPctOfRule);
+      }
+    }
+    return b;
+  }
+
+  private static Buf insights(CompactParsedLog.RunInsights ri, NameTable names) {
+    Buf b = new Buf();
+    b.zigzag(ri.totalTasks);
+    b.zigzag(ri.totalStages);
+    b.zigzag(ri.tinyStages);
+    b.dbl(ri.medianStageDurationMs);
+    b.strings(ri.recommendations, names);
+    b.value(ri.evidence, names);
+    return b;
+  }
+
+  private static Buf utilization(UtilizationScore u, NameTable names) {
+    Buf b = new Buf();
+    b.zigzag(u.utilizationScore);
+    b.dbl(u.parallelismUtil);
+    b.string(u.classification, names);
+    b.value(u.evidence, names);
+    b.strings(u.recommendations, names);
+    return b;
+  }
+
+  private static Buf slots(CompactParsedLog.SlotOccupancy o) {
+    Buf b = new Buf();
+    b.varint(o.intervalMs);
+    b.dbl(o.capacitySlotSeconds);
+    b.dbl(o.busySlotSeconds);
+    b.dbl(o.idleSlotSeconds);
+    b.varint(o.series.size());
+    long prev = 0;
+    for (CompactParsedLog.SlotInterval i : o.series) {
+      b.zigzag(i.startMs - prev);
+      prev = i.startMs;
+    }
+    for (CompactParsedLog.SlotInterval i : o.series) b.dbl(i.runningTasks);
+    for (CompactParsedLog.SlotInterval i : o.series) b.dbl(i.slots);
+    for (CompactParsedLog.SlotInterval i : o.series) b.dbl(i.occupancy);
+    return b;
+  }
+
+  /** Stage parent ids (in stage-list order), jobs and critical paths. */
+  private static Buf dag(CompactParsedLog p, NameTable names) {
+    Buf b = new Buf();
+    b.varint(p.stages.size());
+    for (CompactParsedLog.StageSummary s : p.stages) b.ints(s.parentIds);
+    b.varint(p.jobs.size());
+    for (CompactParsedLog.JobSummary j : p.jobs) {
+      b.zigzag(j.jobId);
+      b.optLong(j.submissionTimeMs);
+      b.optLong(j.completionTimeMs);
+      b.optLong(j.durationMs);
+      b.string(j.result, names);
+      b.ints(j.stageIds);
+      path(b, j.criticalPath, names);
+    }
+    path(b, p.criticalPath, names);
+    return b;
+  }
+
+  private static Buf sql(List<CompactParsedLog.SqlExecution> qs, NameTable names) {
+    Buf b = new Buf();
+    b.varint(qs.size());
+    b.longs(qs, q -> q.executionId, true);
+    for (CompactParsedLog.SqlExecution q : qs) b.string(q.description, names);
+    b.optLongs(qs, q -> q.startTimeMs, true);
+    b.optLongs(qs, q -> q.endTimeMs, true);
+    b.optLongs(qs, q -> q.durationMs, false);
+    for (CompactParsedLog.SqlExecution q : qs) b.string(q.errorMessage, names);
+    for (CompactParsedLog.SqlExecution q : qs) b.ints(q.jobIds);
+    for (CompactParsedLog.SqlExecution q : qs) b.ints(q.stageIds);
+    b.longs(qs, q -> q.numTasks, false);
+    b.longs(qs, q -> q.taskTimeMs, false);
+    b.longs(qs, q -> q.executorRunTimeMs, false);
+    b.longs(qs, q -> q.gcTimeMs, false);
+    b.longs(qs, q -> q.shuffleReadBytes, false);
+    b.longs(qs, q -> q.shuffleWriteBytes, false);
+    b.longs(qs, q -> q.spillMemBytes, false);
+    b.longs(qs, q -> q.spillDiskBytes, false);
+    return b;
+  }
+
+  /** Per query, in SQL-section order: its operators and their metrics. */
+  private static Buf sqlOperators(List<CompactParsedLog.SqlExecution> qs, NameTable names) {
+    Buf b = new Buf();
+    b.varint(qs.size());
+    for (CompactParsedLog.SqlExecution q : qs) {
+      b.varint(q.operators.size());
+      for (CompactParsedLog.SqlOperator o : q.operators) {
+        b.string(o.nodeName, names);
+        b.string(o.description, names);
+        b.zigzag(o.timeMs);
+        b.varint(o.metrics.size());
+        for (Map.Entry<String, Long> m : o.metrics.entrySet()) {
+          b.string(m.getKey(), names);
+          b.zigzag(m.getValue());
+        }
+      }
+    }
+    return b;
+  }
+
+  private static void path(Buf b, CompactParsedLog.CriticalPath cp, NameTable names) {
+    b.write(cp == null ? 0 : 1);
+    if (cp == null) return;
+    b.zigzag(cp.startMs);
+    b.zigzag(cp.endMs);
+    b.zigzag(cp.spanMs);
+    b.zigzag(cp.stageMs);
+    b.zigzag(cp.gapMs);
+    b.varint(cp.stages.size());
+    for (CompactParsedLog.PathStage s : cp.stages) {
+      b.zigzag(s.stageId);
+      b.zigzag(s.attempts);
+      b.string(s.name, names);
+      b.zigzag(s.startMs);
+      b.zigzag(s.endMs);
+      b.zigzag(s.durationMs);
+      b.string(s.via, names);
+      b.zigzag(s.gapBeforeMs);
+      b.zigzag(s.potentialSavingMs);
+      b.dbl(s.pctOfSpan);
+    }
+  }
+
+  // ---------- reading ----------
+
+  public static ParsedLogSnapshot open(Path file) throws IOException {
+    ParsedLogSnapshot s = new ParsedLogSnapshot(file);
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 4096))) {
+      if (in.readInt() != MAGIC) throw new IOException("Not a parsed-log snapshot: " + file);
+      int version = in.readInt();
+      if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + file);
+      for (int i = in.readInt(); i > 0; i--) {
+        int id = in.readInt();
+        s.toc.put(id, new long[] {in.readLong(), in.readInt()});
+      }
+    }
+    return s;
+  }
+
+  /** appId, times and status plus the executor summary; every other field is left empty. */
+  public CompactParsedLog app() throws IOException {
+    if (app == null) {
+      In in = section(APP);
+      CompactParsedLog p = new CompactParsedLog();
+      p.appId = in.string();
+      p.startTimeMs = in.optLong();
+      p.endTimeMs = in.optLong();
+      p.durationMs = in.optLong();
+      p.status = in.string();
+      p.executors.maxExecutors = (int) in.zigzag();
+      p.executors.totalAdded = (int) in.zigzag();
+      p.executors.totalRemoved = (int) in.zigzag();
+      Long cores = in.optLong();
+      p.executors.executorCores = cores == null ? null : cores.intValue();
+      p.executors.avgExecutors = in.optDouble();
+      app = p;
+    }
+    return app;
+  }
+
+  public Map<String, String> sparkConf() throws IOException {
+    if (sparkConf == null) {
+      In in = section(CONF);
+      int n = (int) in.varint();
+      Map<String, String> m = new LinkedHashMap<>();
+      for (int i = 0; i < n; i++) m.put(in.string(), in.string());
+      sparkConf = m;
+    }
+    return sparkConf;
+  }
+
+  public List<CompactParsedLog.StageSummary> stages() throws IOException {
+    if (stages == null) {
+      In in = section(STAGES);
+      int n = (int) in.varint();
+      CompactParsedLog.StageSummary[] ss = new CompactParsedLog.StageSummary[n];
+      for (int i = 0; i < n; i++) ss[i] = new CompactParsedLog.StageSummary();
+      long[] v = in.longs(n, true);
+      for (int i = 0; i < n; i++) ss[i].stageId = (int) v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) ss[i].attemptId = (int) v[i];
+      for (int i = 0; i < n; i++) ss[i].name = in.string();
+      Long[] o = in.optLongs(n, true);
+      for (int i = 0; i < n; i++) ss[i].submissionTimeMs = o[i];
+      o = in.optLongs(n, true);
+      for (int i = 0; i < n; i++) ss[i].completionTimeMs = o[i];
+      o = in.optLongs(n, false);
+      for (int i = 0; i < n; i++) ss[i].durationMs = o[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) ss[i].numTasks = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) ss[i].executorRunTimeMs = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) ss[i].gcTimeMs = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) ss[i].shuffleReadBytes = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) ss[i].shuffleWriteBytes = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) ss[i].spillMemBytes = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) ss[i].spillDiskBytes = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) ss[i].maxTaskDurationMs = v[i];
+      for (int i = 0; i < n; i++) ss[i].p50TaskDurationMs = in.dbl();
+      for (int i = 0; i < n; i++) ss[i].p95TaskDurationMs = in.dbl();
+      for (int i = 0; i < n; i++) ss[i].p99TaskDurationMs = in.dbl();
+      for (int i = 0; i < n; i++) ss[i].p999TaskDurationMs = in.dbl();
+      for (int i = 0; i < n; i++) ss[i].maxOverP50 = in.dbl();
+      for (int i = 0; i < n; i++) ss[i].stragglerPct = in.dbl();
+      stages = new ArrayList<>(Arrays.asList(ss));
+      if (toc.containsKey(DAG)) {
+        In d = section(DAG);
+        int m = (int) d.varint();
+        for (int i = 0; i < m && i < n; i++) ss[i].parentIds = d.ints();
+      }
+    }
+    return stages;
+  }
+
+  /** Empty if the log was written without jobs. */
+  public List<CompactParsedLog.JobSummary> jobs() throws IOException {
+    if (jobs == null) readDag();
+    return jobs;
+  }
+
+  /** The app's critical path; null if none was found or the log was written without one. */
+  public CompactParsedLog.CriticalPath criticalPath() throws IOException {
+    if (jobs == null) readDag();
+    return criticalPath;
+  }
+
+  private void readDag() throws IOException {
+    jobs = new ArrayList<>();
+    if (!toc.containsKey(DAG)) return;
+    In in = section(DAG);
+    for (int i = (int) in.varint(); i > 0; i--) in.ints(); // stage parents: read with the stages
+    for (int i = (int) in.varint(); i > 0; i--) {
+      CompactParsedLog.JobSummary j = new CompactParsedLog.JobSummary();
+      j.jobId = (int) in.zigzag();
+      j.submissionTimeMs = in.optLong();
+      j.completionTimeMs = in.optLong();
+      j.durationMs = in.optLong();
+      j.result = in.string();
+      j.stageIds = in.ints();
+      j.criticalPath = readPath(in);
+      jobs.add(j);
+    }
+    criticalPath = readPath(in);
+
+    // a job's query is stored once, on the query
+    Map<Integer, CompactParsedLog.JobSummary> byId = new HashMap<>();
+    for (CompactParsedLog.JobSummary j : jobs) byId.put(j.jobId, j);
+    for (CompactParsedLog.SqlExecution q : sqlExecutions()) {
+      for (int id : q.jobIds) {
+        CompactParsedLog.JobSummary j = byId.get(id);
+        if (j != null) j.sqlExecutionId = q.executionId;
+      }
+    }
+  }
+
+  /** Empty if the log was written without SQL executions. */
+  public List<CompactParsedLog.SqlExecution> sqlExecutions() throws IOException {
+    if (sqlExecutions == null) {
+      sqlExecutions = new ArrayList<>();
+      if (!toc.containsKey(SQL)) return sqlExecutions;
+      In in = section(SQL);
+      int n = (int) in.varint();
+      CompactParsedLog.SqlExecution[] qs = new CompactParsedLog.SqlExecution[n];
+      for (int i = 0; i < n; i++) qs[i] = new CompactParsedLog.SqlExecution();
+      long[] v = in.longs(n, true);
+      for (int i = 0; i < n; i++) qs[i].executionId = v[i];
+      for (int i = 0; i < n; i++) qs[i].description = in.string();
+      Long[] o = in.optLongs(n, true);
+      for (int i = 0; i < n; i++) qs[i].startTimeMs = o[i];
+      o = in.optLongs(n, true);
+      for (int i = 0; i < n; i++) qs[i].endTimeMs = o[i];
+      o = in.optLongs(n, false);
+      for (int i = 0; i < n; i++) qs[i].durationMs = o[i];
+      for (int i = 0; i < n; i++) qs[i].errorMessage = in.string();
+      for (int i = 0; i < n; i++) qs[i].jobIds = in.ints();
+      for (int i = 0; i < n; i++) qs[i].stageIds = in.ints();
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) qs[i].numTasks = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) qs[i].taskTimeMs = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) qs[i].executorRunTimeMs = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) qs[i].gcTimeMs = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) qs[i].shuffleReadBytes = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) qs[i].shuffleWriteBytes = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) qs[i].spillMemBytes = v[i];
+      v = in.longs(n, false);
+      for (int i = 0; i < n; i++) qs[i].spillDiskBytes = v[i];
+      sqlExecutions.addAll(Arrays.asList(qs));
+
+      if (toc.containsKey(SQL_OPERATORS)) {
+        In ops = section(SQL_OPERATORS);
+        int m = (int) ops.varint();
+        for (int i = 0; i < m && i < n; i++) {
+          for (int k = (int) ops.varint(); k > 0; k--) {
+            CompactParsedLog.SqlOperator op = new CompactParsedLog.SqlOperator();
+            op.nodeName = ops.string();
+            op.description = ops.string();
+            op.timeMs = ops.zigzag();
+            for (int j = (int) ops.varint(); j > 0; j--) op.metrics.put(ops.string(), ops.zigzag());
+            qs[i].operators.add(op);
+          }
+        }
+      }
+    }
+    return sqlExecutions;
+  }
+
+  private static CompactParsedLog.CriticalPath readPath(In in) {
+    if (in.b[in.pos++] == 0) return null;
+    CompactParsedLog.CriticalPath cp = new CompactParsedLog.CriticalPath();
+    cp.startMs = in.zigzag();
+    cp.endMs = in.zigzag();
+    cp.spanMs = in.zigzag();
+    cp.stageMs = in.zigzag();
+    cp.gapMs = in.zigzag();
+    for (int i = (int) in.varint(); i > 0; i--) {
+      CompactParsedLog.PathStage s = new CompactParsedLog.PathStage();
+      s.stageId = (int) in.zigzag();
+      s.attempts = (int) in.zigzag();
+      s.name = in.string();
+      s.startMs = in.zigzag();
+      s.endMs = in.zigzag();
+      s.durationMs = in.zigzag();
+      s.via = in.string();
+      s.gapBeforeMs = in.zigzag();
+      s.potentialSavingMs = in.zigzag();
+      s.pctOfSpan = in.dbl();
+      cp.stages.add(s);
+    }
+    return cp;
+  }
+
+  public List<CompactParsedLog.NodeSummary> executorStats() throws IOException {
+    if (executorStats == null) executorStats = readNodes(EXECUTOR_STATS);
+    return executorStats;
+  }
+
+  public List<CompactParsedLog.NodeSummary> hostStats() throws IOException {
+    if (hostStats == null) hostStats = readNodes(HOST_STATS);
+    return hostStats;
+  }
+
+  private List<CompactParsedLog.NodeSummary> readNodes(int id) throws IOException {
+    In in = section(id);
+    int n = (int) in.varint();
+    CompactParsedLog.NodeSummary[] ns = new CompactParsedLog.NodeSummary[n];
+    for (int i = 0; i < n; i++) ns[i] = new CompactParsedLog.NodeSummary();
+    for (int i = 0; i < n; i++) ns[i].id = in.string();
+    for (int i = 0; i < n; i++) ns[i].host = in.string();
+    long[] v = in.longs(n, false);
+    for (int i = 0; i < n; i++) ns[i].tasks = v[i];
+    v = in.longs(n, false);
+    for (int i = 0; i < n; i++) ns[i].executorRunTimeMs = v[i];
+    v = in.longs(n, false);
+    for (int i = 0; i < n; i++) ns[i].gcTimeMs = v[i];
+    v = in.longs(n, false);
+    for (int i = 0; i < n; i++) ns[i].shuffleFetchWaitMs = v[i];
+    for (int i = 0; i < n; i++) ns[i].p50TaskDurationMs = in.dbl();
+    for (int i = 0; i < n; i++) ns[i].p95TaskDurationMs = in.dbl();
+    v = in.longs(n, false);
+    for (int i = 0; i < n; i++) ns[i].maxTaskDurationMs = v[i];
+    return new ArrayList<>(Arrays.asList(ns));
+  }
+
+  public List<CompactParsedLog.BadNode> badNodes() throws IOException {
+    if (badNodes == null) {
+      In in = section(BAD_NODES);
+      List<CompactParsedLog.BadNode> out = new ArrayList<>();
+      for (long i = in.varint(); i > 0; i--) {
+        CompactParsedLog.BadNode b = new CompactParsedLog.BadNode();
+        b.kind = in.string();
+        b.id = in.string();
+        b.stageId = (int) in.zigzag();
+        b.attemptId = (int) in.zigzag();
+        b.tasks = in.zigzag();
+        b.geoMeanTaskDurationMs = in.dbl();
+        b.peerGeoMeanTaskDurationMs = in.dbl();
+        b.slowdown = in.dbl();
+        b.tStat = in.dbl();
+        out.add(b);
+      }
+      badNodes = out;
+    }
+    return badNodes;
+  }
+
+  public List<MatchRuleMetric> matchRules() throws IOException {
+    if (matchRules == null) {
+      In in = section(MATCH_RULES);
+      List<MatchRuleMetric> out = new ArrayList<>();
+      for (long i = in.varint(); i > 0; i--) {
+        MatchRuleMetric r = new MatchRuleMetric();
+        r.rule = in.string();
+        r.matchCandidates = in.optLong();
+        r.matches = in.optLong();
+        r.matchesFromAgeingBreaks = in.optLong();
+        r.totalMatchPct = in.optDouble();
+        r.totalUnmatched = in.optLong();
+        r.matchTimeSec = in.optDouble();
+        r.timestampMs = in.optLong();
+        Long job = in.optLong();
+        r.jobId = job == null ? null : job.intValue();
+        out.add(r);
+      }
+      matchRules = out;
+    }
+    return matchRules;
+  }
+
+  public List<RuleStageCorrelation> ruleStageCorrelations() throws IOException {
+    if (correlations == null) {
+      In in = section(CORRELATIONS);
+      List<RuleStageCorrelation> out = new ArrayList<>();
+      for (long i = in.varint(); i > 0; i--) {
+        RuleStageCorrelation c = new RuleStageCorrelation();
+        c.rule = in.string();
+        c.ruleEndTimeMs = in.optLong();
+        c.ruleStartTimeMs = in.optLong();
+        c.ruleMatchTimeSec = in.optDouble();
+        for (long j = in.varint(); j > 0; j--) {
+          RuleStageCorrelation.Overlap o = new RuleStageCorrelation.Overlap();
+          o.stageId = (int) in.zigzag();
+          o.attemptId = (int) in.zigzag();
+          o.stageName = in.string();
+          o.stageStartMs = in.optLong();
+          o.stageEndMs = in.optLong();
+          o.overlapMs = in.zigzag();
+          o.overlapPctOfRule = in.dbl();
+          c.overlaps.add(o);
+        }
+        out.add(c);
+      }
+      correlations = out;
+    }
+    return correlations;
+  }
+
+  @SuppressWarnings("unchecked")
+  public CompactParsedLog.RunInsights runInsights() throws IOException {
+    if (runInsights == null) {
+      In in = section(INSIGHTS);
+      CompactParsedLog.RunInsights ri = new CompactParsedLog.RunInsights();
+      ri.totalTasks = in.zigzag();
+      ri.totalStages = (int) in.zigzag();
+      ri.tinyStages = in.zigzag();
+      ri.medianStageDurationMs = in.dbl();
+      ri.recommendations = in.strings();
+      ri.evidence = (Map<String, Object>) in.value();
+      runInsights = ri;
+    }
+    return runInsights;
+  }
+
+  /** Null if the log was written without a utilization score. */
+  @SuppressWarnings("unchecked")
+  public UtilizationScore utilization() throws IOException {
+    if (!utilizationRead) {
+      if (toc.containsKey(UTILIZATION)) {
+        In in = section(UTILIZATION);
+        UtilizationScore u = new UtilizationScore();
+        u.utilizationScore = (int) in.zigzag();
+        u.parallelismUtil = in.dbl();
+        u.classification = in.string();
+        u.evidence = (Map<String, Object>) in.value();
+        u.recommendations = in.strings();
+        utilization = u;
+      }
+      utilizationRead = true;
+    }
+    return utilization;
+  }
+
+  /** Null if the log was written without slot occupancy. */
+  public CompactParsedLog.SlotOccupancy slotOccupancy() throws IOException {
+    if (!slotsRead) {
+      if (toc.containsKey(SLOTS)) {
+        In in = section(SLOTS);
+        CompactParsedLog.SlotOccupancy o = new CompactParsedLog.SlotOccupancy();
+        o.intervalMs = in.varint();
+        o.capacitySlotSeconds = in.dbl();
+        o.busySlotSeconds = in.dbl();
+        o.idleSlotSeconds = in.dbl();
+        int n = (int) in.varint();
+        long prev = 0;
+        for (int i = 0; i < n; i++) {
+          CompactParsedLog.SlotInterval s = new CompactParsedLog.SlotInterval();
+          s.startMs = prev += in.zigzag();
+          o.series.add(s);
+        }
+        for (CompactParsedLog.SlotInterval s : o.series) s.runningTasks = in.dbl();
+        for (CompactParsedLog.SlotInterval s : o.series) s.slots = in.dbl();
+        for (CompactParsedLog.SlotInterval s : o.series) s.occupancy = in.dbl();
+        slotOccupancy = o;
+      }
+      slotsRead = true;
+    }
+    return slotOccupancy;
+  }
+
+  /** Every section, materialized. */
+  public CompactParsedLog toParsedLog() throws IOException {
+    CompactParsedLog a = app();
+    CompactParsedLog p = new CompactParsedLog();
+    p.appId = a.appId;
+    p.startTimeMs = a.startTimeMs;
+    p.endTimeMs = a.endTimeMs;
+    p.durationMs = a.durationMs;
+    p.status = a.status;
+    p.executors = a.executors;
+    p.sparkConf = sparkConf();
+    p.stages = stages();
+    p.jobs = jobs();
+    p.criticalPath = criticalPath();
+    p.sqlExecutions = sqlExecutions();
+    p.executorStats = executorStats();
+    p.hostStats = hostStats();
+    p.badNodes = badNodes();
+    p.matchRules = matchRules();
+    p.ruleStageCorrelations = ruleStageCorrelations();
+    p.runInsights = runInsights();
+    p.slotOccupancy = slotOccupancy();
+    p.utilization = utilization();
+    return p;
+  }
+
+  private In section(int id) throws IOException {
+    if (id != DICT && dict == null) {
+      In d = section(DICT);
+      String[] s = new String[(int) d.varint()];
+      for (int i = 0; i < s.length; i++) {
+        int len = (int) d.varint();
+        s[i] = new String(d.b, d.pos, len, StandardCharsets.UTF_8);
+        d.pos += len;
+      }
+      dict = s;
+    }
+    long[] e = toc.get(id);
+    if (e == null) throw new IOException("Snapshot has no section " + id + ": " + file);
+    ByteBuffer bb = ByteBuffer.allocate((int) e[1]);
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (bb.hasRemaining()) {
+        if (ch.read(bb, e[0] + bb.position()) < 0) throw new EOFException("Truncated snapshot: " + file);
+      }
+    }
+    return new In(bb.array(), dict);
+  }
+
+  // ---------- encoding ----------
+
+  // Generic values (evidence maps): one tag byte, then the payload.
+  private static final int T_NULL = 0, T_FALSE = 1, T_TRUE = 2, T_LONG = 3, T_DOUBLE = 4, T_STRING = 5, T_LIST = 6, T_MAP = 7;
+
+  private static final class Buf extends ByteArrayOutputStream {
+    void varint(long v) {
+      while ((v & ~0x7FL) != 0) {
+        write((int) (v & 0x7F) | 0x80);
+        v >>>= 7;
+      }
+      write((int) v);
+    }
+
+    void zigzag(long v) { varint((v << 1) ^ (v >> 63)); }
+
+    void dbl(double v) {
+      long bits = Double.doubleToRawLongBits(v);
+      for (int i = 0; i < 8; i++) write((int) (bits >>> (8 * i)));
+    }
+
+    /** Dictionary index + 1; 0 is null. */
+    void string(String s, NameTable names) { varint(s == null ? 0 : names.intern(s) + 1L); }
+
+    void strings(List<String> l, NameTable names) {
+      varint(l.size());
+      for (String s : l) string(s, names);
+    }
+
+    void ints(List<Integer> l) {
+      varint(l.size());
+      for (int v : l) zigzag(v);
+    }
+
+    void optLong(Long v) {
+      write(v == null ? 0 : 1);
+      if (v != null) zigzag(v);
+    }
+
+    void optDouble(Double v) {
+      write(v == null ? 0 : 1);
+      if (v != null) dbl(v);
+    }
+
+    <T> void longs(List<T> rows, ToLongFunction<T> f, boolean delta) {
+      long prev = 0;
+      for (T r : rows) {
+        long v = f.applyAsLong(r);
+        zigzag(delta ? v - prev : v);
+        prev = v;
+      }
+    }
+
+    /** Presence bitmap, then the present values (delta against the previous present one). */
+    <T> void optLongs(List<T> rows, Function<T, Long> f, boolean delta) {
+      byte[] present = new byte[(rows.size() + 7) / 8];
+      for (int i = 0; i < rows.size(); i++) if (f.apply(rows.get(i)) != null) present[i >> 3] |= (byte) (1 << (i & 7));
+      write(present, 0, present.length);
+      long prev = 0;
+      for (T r : rows) {
+        Long v = f.apply(r);
+        if (v == null) continue;
+        zigzag(delta ? v - prev : v);
+        prev = v;
+      }
+    }
+
+    <T> void doubles(List<T> rows, ToDoubleFunction<T> f) {
+      for (T r : rows) dbl(f.applyAsDouble(r));
+    }
+
+    void value(Object v, NameTable names) {
+      if (v == null) {
+        write(T_NULL);
+      } else if (v instanceof Boolean bo) {
+        write(bo ? T_TRUE : T_FALSE);
+      } else if (v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte) {
+        write(T_LONG);
+        zigzag(((Number) v).longValue());
+      } else if (v instanceof Number n) {
+        write(T_DOUBLE);
+        dbl(n.doubleValue());
+      } else if (v instanceof Collection<?> c) {
+        write(T_LIST);
+        varint(c.size());
+        for (Object o : c) value(o, names);
+      } else if (v instanceof Map<?, ?> m) {
+        write(T_MAP);
+        varint(m.size());
+        for (Map.Entry<?, ?> e : m.entrySet()) {
+          string(String.valueOf(e.getKey()), names);
+          value(e.getValue(), names);
+        }
+      } else {
+        write(T_STRING);
+        string(v.toString(), names);
+      }
+    }
+  }
+
+  private static final class In {
+    final byte[] b;
+    final String[] dict;
+    int pos;
+
+    In(byte[] b, String[] dict) {
+      this.b = b;
+      this.dict = dict;
+    }
+
+    long varint() {
+      long v = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte x = b[pos++];
+        v |= (long) (x & 0x7F) << shift;
+        if (x >= 0) return v;
+      }
+    }
+
+    long zigzag() {
+      long v = varint();
+      return (v >>> 1) ^ -(v & 1);
+    }
+
+    double dbl() {
+      long bits = 0;
+      for (int i = 0; i < 8; i++) bits |= (b[pos++] & 0xFFL) << (8 * i);
+      return Double.longBitsToDouble(bits);
+    }
+
+    String string() {
+      int i = (int) varint();
+      return i == 0 ? null : dict[i - 1];
+    }
+
+    List<String> strings() {
+      int n = (int) varint();
+      List<String> l = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) l.add(string());
+      return l;
+    }
+
+    List<Integer> ints() {
+      int n = (int) varint();
+      List<Integer> l = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) l.add((int) zigzag());
+      return l;
+    }
+
+    Long optLong() { return b[pos++] == 0 ? null : zigzag(); }
+
+    Double optDouble() { return b[pos++] == 0 ? null : dbl(); }
+
+    long[] longs(int n, boolean delta) {
+      long[] v = new long[n];
+      long prev = 0;
+      for (int i = 0; i < n; i++) {
+        v[i] = delta ? prev + zigzag() : zigzag();
+        prev = v[i];
+      }
+      return v;
+    }
+
+    Long[] optLongs(int n, boolean delta) {
+      int bitmap = pos;
+      pos += (n + 7) / 8;
+      Long[] v = new Long[n];
+      long prev = 0;
+      for (int i = 0; i < n; i++) {
+        if ((b[bitmap + (i >> 3)] & (1 << (i & 7))) == 0) continue;
+        prev = delta ? prev + zigzag() : zigzag();
+        v[i] = prev;
+      }
+      return v;
+    }
+
+    Object value() {
+      int tag = b[pos++];
+      switch (tag) {
+        case T_NULL: return null;
+        case T_FALSE: return false;
+        case T_TRUE: return true;
+        case T_LONG: return zigzag();
+        case T_DOUBLE: return dbl();
+        case T_STRING: return string();
+        case T_LIST: {
+          int n = (int) varint();
+          List<Object> l = new ArrayList<>(n);
+          for (int i = 0; i < n; i++) l.add(value());
+          return l;
+        }
+        case T_MAP: {
+          int n = (int) varint();
+          Map<String, Object> m = new LinkedHashMap<>();
+          for (int i = 0; i < n; i++) m.put(string(), value());
+          return m;
+        }
+        default: throw new IllegalStateException("Bad value tag " + tag);
+      }
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decouples decompression from parsing. One thread reads (inflates) the stream into large
+ * line-aligned blocks; parse workers take blocks off a bounded queue and hand them back to a
+ * fixed free pool when done. The pool size is the only memory the pipeline ever holds, so a
+ * slow parser simply stalls the inflater (backpressure).
+ *
+ * Blocks carry a sequence number in stream order so workers can tag order-sensitive state.
+ */
+final class PipelinedLineReader {
+  static final int BLOCK_BYTES = 4 << 20;
+  private static final long POLL_MS = 100;
+
+  /** Per-worker consumer of line-aligned blocks. Not shared between threads. */
+  interface BlockSink {
+    void block(long seq, byte[] buf, int len) throws IOException;
+  }
+
+  private static final class Block {
+    byte[] buf;
+    int len;
+    long seq;
+
+    Block(int size) { buf = new byte[size]; }
+  }
+
+  private static final Block EOF = new Block(0);
+
+  private final int workers;
+  private final int blockBytes;
+  private final BlockingQueue<Block> free;
+  private final BlockingQueue<Block> full;
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  PipelinedLineReader(int workers) { this(workers, BLOCK_BYTES); }
+
+  PipelinedLineReader(int workers, int blockBytes) {
+    this.workers = Math.max(1, workers);
+    this.blockBytes = blockBytes;
+    int blocks = 2 * this.workers + 2;
+    this.free = new ArrayBlockingQueue<>(blocks);
+    this.full = new ArrayBlockingQueue<>(blocks + this.workers);
+    for (int i = 0; i < blocks; i++) free.add(new Block(blockBytes));
+  }
+
+  /** Reads {@code in} to the end; {@code sinks} must have one entry per worker. */
+  void run(InputStream in, List<? extends BlockSink> sinks) throws Exception {
+    if (sinks.size() != workers) throw new IllegalArgumentException("need " + workers + " sinks, got " + sinks.size());
+
+    ExecutorService pool = Executors.newFixedThreadPool(workers + 1, r -> {
+      Thread t = new Thread(r, "eventlog-pipeline");
+      t.setDaemon(true);
+      return t;
+    });
+    try {
+      List<Future<?>> fs = new ArrayList<>();
+      fs.add(pool.submit(() -> guard(() -> inflate(in))));
+      for (BlockSink s : sinks) fs.add(pool.submit(() -> guard(() -> consume(s))));
+      for (Future<?> f : fs) f.get();
+    } finally {
+      pool.shutdownNow();
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof Exception e) throw e;
+    if (t instanceof Error e) throw e;
+  }
+
+  private void inflate(InputStream in) throws Exception {
+    byte[] carry = new byte[0];
+    int carryLen = 0;
+    long seq = 0;
+
+    boolean eof = false;
+    while (!eof) {
+      Block b = take(free);
+      if (b == null) return;
+      if (b.buf.length < Math.max(blockBytes, carryLen * 2)) b.buf = new byte[Math.max(blockBytes, carryLen * 2)];
+
+      System.arraycopy(carry, 0, b.buf, 0, carryLen);
+      int len = carryLen;
+
+      // fill, growing only when a single line does not fit in the block
+      int lastNl;
+      while (true) {
+        while (len < b.buf.length) {
+          int n = in.read(b.buf, len, b.buf.length - len);
+          if (n < 0) { eof = true; break; }
+          len += n;
+        }
+        lastNl = lastIndexOf(b.buf, len, (byte) '\n');
+        if (eof || lastNl >= 0) break;
+        b.buf = Arrays.copyOf(b.buf, b.buf.length * 2);
+      }
+
+      int emit = eof ? len : lastNl + 1;
+      carryLen = len - emit;
+      if (carry.length < carryLen) carry = new byte[Math.max(carryLen, blockBytes)];
+      System.arraycopy(b.buf, emit, carry, 0, carryLen);
+
+      b.len = emit;
+      b.seq = seq++;
+      if (!put(full, b)) return;
+    }
+
+    for (int i = 0; i < workers; i++) if (!put(full, EOF)) return;
+  }
+
+  private void consume(BlockSink sink) throws Exception {
+    while (true) {
+      Block b = take(full);
+      if (b == null || b == EOF) return;
+      try {
+        if (b.len > 0) sink.block(b.seq, b.buf, b.len);
+      } finally {
+        free.offer(b);
+      }
+    }
+  }
+
+  // ---------- plumbing ----------
+
+  private interface Step { void run() throws Exception; }
+
+  private Void guard(Step s) {
+    try {
+      s.run();
+    } catch (Throwable t) {
+      failure.compareAndSet(null, t);
+    }
+    return null;
+  }
+
+  /** Blocks until an element is available; null once another thread has failed. */
+  private Block take(BlockingQueue<Block> q) throws InterruptedException {
+    while (failure.get() == null) {
+      Block b = q.poll(POLL_MS, TimeUnit.MILLISECONDS);
+      if (b != null) return b;
+    }
+    return null;
+  }
+
+  private boolean put(BlockingQueue<Block> q, Block b) throws InterruptedException {
+    while (failure.get() == null) {
+      if (q.offer(b, POLL_MS, TimeUnit.MILLISECONDS)) return true;
+    }
+    return false;
+  }
+
+  private static int lastIndexOf(byte[] buf, int len, byte v) {
+    for (int i = len - 1; i >= 0; i--) if (buf[i] == v) return i;
+    return -1;
+  }
+}
@@ -89,6 +89,90 @@ public class RecommendationsEngine {
       }
     }
 
+    // --- Recommendations: SQL queries ---
+    if (run.sqlExecutions != null && !run.sqlExecutions.isEmpty()) {
+      var bySlotTime = new ArrayList<>(run.sqlExecutions);
+      bySlotTime.sort((a, b) -> Long.compare(b.taskTimeMs, a.taskTimeMs));
+      var slowest = run.sqlExecutions.stream()
+          .filter(q -> q.durationMs != null)
+          .max(Comparator.comparingLong(q -> q.durationMs));
+
+      run.runInsights.evidence.put("sqlExecutions", run.sqlExecutions.size());
+      if (slowest.isPresent()) {
+        var q = slowest.get();
+        add(run, "Slowest SQL query: execution " + q.executionId + " (" + safe(q.description) + "), durationMs=" + q.durationMs +
+            ", jobs=" + q.jobIds.size() + ", taskTimeMs=" + q.taskTimeMs + ", shuffleRead=" + q.shuffleReadBytes +
+            ", shuffleWrite=" + q.shuffleWriteBytes + ", spill=" + (q.spillMemBytes + q.spillDiskBytes));
+      }
+      var busiest = bySlotTime.get(0);
+      if (busiest.taskTimeMs > 0 && (slowest.isEmpty() || slowest.get() != busiest)) {
+        add(run, "SQL query using the most task time: execution " + busiest.executionId + " (" + safe(busiest.description) +
+            "), taskTimeMs=" + busiest.taskTimeMs + ", durationMs=" + busiest.durationMs);
+      }
+    }
+
+    // --- Recommendations: SQL operator hotspots ---
+    if (run.sqlExecutions != null) {
+      record Op(CompactParsedLog.SqlExecution q, CompactParsedLog.SqlOperator o) {}
+
+      // codegen stages wrap the operators they fuse, so their duration would count them twice
+      List<Op> ops = new ArrayList<>();
+      for (var q : run.sqlExecutions) {
+        for (var o : q.operators) {
+          if (o.nodeName != null && !o.nodeName.startsWith("WholeStageCodegen")) ops.add(new Op(q, o));
+        }
+      }
+      ops.sort(Comparator.comparingLong((Op x) -> x.o().timeMs).reversed());
+      long floor = Math.max(1000, totalExecutorRun / 100);
+      for (int i = 0; i < Math.min(3, ops.size()); i++) {
+        Op x = ops.get(i);
+        if (x.o().timeMs < floor) break;
+        add(run, "Operator hotspot: " + x.o().nodeName + " in SQL execution " + x.q().executionId + " (" + safe(x.q().description) +
+            "), timeMs=" + x.o().timeMs + ", metrics=" + x.o().metrics + ". " + operatorHint(x.o()));
+      }
+
+      for (Op x : ops) {
+        Long spill = x.o().metrics.get("spill size");
+        if (spill != null && spill > 1_000_000_000L) {
+          add(run, "Operator spill: " + x.o().nodeName + " in SQL execution " + x.q().executionId +
+              " spilled " + round2(spill / 1_000_000_000.0) + " GB: give it more memory per task or more shuffle partitions.");
+          break;
+        }
+      }
+    }
+
+    // --- Recommendations: critical path ---
+    if (run.criticalPath != null && run.criticalPath.spanMs > 0) {
+      var cp = run.criticalPath;
+      run.runInsights.evidence.put("criticalPathSpanMs", cp.spanMs);
+      run.runInsights.evidence.put("criticalPathStageMs", cp.stageMs);
+      run.runInsights.evidence.put("criticalPathGapMs", cp.gapMs);
+      run.runInsights.evidence.put("criticalPathStages", cp.stages.size());
+
+      var path = new ArrayList<>(cp.stages);
+      path.sort((a, b) -> Long.compare(b.potentialSavingMs, a.potentialSavingMs));
+      Set<Integer> onPath = new HashSet<>();
+      for (var ps : cp.stages) onPath.add(ps.stageId);
+
+      for (int i = 0; i < Math.min(3, path.size()); i++) {
+        var ps = path.get(i);
+        if (ps.potentialSavingMs < Math.max(1000, cp.spanMs / 20)) break;
+        add(run, "Critical-path stage: stage " + ps.stageId + " (" + safe(ps.name) + "), durationMs=" + ps.durationMs +
+            " (" + round2(ps.pctOfSpan) + "% of the critical path); speeding it up can cut end-to-end time by up to " + ps.potentialSavingMs + "ms.");
+      }
+
+      if (!byExec.isEmpty() && byExec.get(0).executorRunTimeMs > 0 && !onPath.contains(byExec.get(0).stageId)) {
+        var s = byExec.get(0);
+        add(run, "Stage " + s.stageId + " (" + safe(s.name) + ") has the most executor time but is off the critical path: " +
+            "tuning it frees cluster resources without shortening the run.");
+      }
+
+      if (cp.gapMs > cp.spanMs / 4) {
+        add(run, "Critical path spends " + cp.gapMs + "ms (" + round2(100.0 * cp.gapMs / cp.spanMs) + "%) between stages: " +
+            "driver-side work or scheduling delay between actions, not executor time, bounds this run.");
+      }
+    }
+
     // --- Recommendations: rule domain ---
     if (run.matchRules != null && !run.matchRules.isEmpty()) {
       var rules = new ArrayList<>(run.matchRules);
@@ -126,6 +210,17 @@ public class RecommendationsEngine {
     }
   }
 
+  private static String operatorHint(CompactParsedLog.SqlOperator o) {
+    String n = o.nodeName;
+    if (n.contains("SortMergeJoin")) return "If one side is small, raise spark.sql.autoBroadcastJoinThreshold or add a broadcast hint; check the join keys for skew.";
+    if (n.startsWith("BroadcastExchange")) return "The broadcast side is expensive to build: lower spark.sql.autoBroadcastJoinThreshold or filter that side first.";
+    if (n.contains("Exchange")) return "Shuffle-heavy: project and filter before the exchange, and tune spark.sql.shuffle.partitions.";
+    if (n.contains("Scan")) return "Scan-bound: check partition pruning and predicate pushdown, and file sizes vs spark.sql.files.maxPartitionBytes.";
+    if (n.contains("Sort")) return "Sort-heavy: check whether the sort is needed (e.g. before a join that could broadcast) and for spill.";
+    if (n.contains("Aggregate")) return "Aggregation-heavy: check for skewed grouping keys and spill.";
+    return "";
+  }
+
   private static void add(CompactParsedLog run, String rec) {
     run.runInsights.recommendations.add(rec);
     if (run.utilization != null) run.utilization.recommendations.add(rec);
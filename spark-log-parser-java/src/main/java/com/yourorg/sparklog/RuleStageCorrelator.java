@@ -2,6 +2,14 @@ package com.yourorg.sparklog;
 
 import java.util.*;
 
+/**
+ * Overlaps each rule's time window with the stages that ran during it.
+ *
+ * Stages are indexed once ({@link StageIntervals}): sorted by submission time, with a max
+ * completion time per subtree, so a rule only visits stages that overlap its window. Overlaps
+ * are emitted in the same order the plain nested loop produced (stage-list order, then a stable
+ * sort by overlap), so the output is unchanged.
+ */
 public class RuleStageCorrelator {
 
   public static List<RuleStageCorrelation> correlate(CompactParsedLog run) {
@@ -9,6 +17,8 @@ public class RuleStageCorrelator {
     if (run.stages == null || run.stages.isEmpty()) return List.of();
 
     List<RuleStageCorrelation> out = new ArrayList<>();
+    StageIntervals index = new StageIntervals(run.stages);
+    IntList hits = new IntList();
 
     for (MatchRuleMetric r : run.matchRules) {
       if (r.timestampMs == null || r.matchTimeSec == null) continue;
@@ -24,12 +34,14 @@ public class RuleStageCorrelator {
 
       long ruleDur = Math.max(1L, end - start);
 
-      for (CompactParsedLog.StageSummary s : run.stages) {
-        if (s.submissionTimeMs == null || s.completionTimeMs == null) continue;
+      hits.size = 0;
+      index.overlapping(start, end, hits);
+      Arrays.sort(hits.a, 0, hits.size); // back to stage-list order
 
+      for (int h = 0; h < hits.size; h++) {
+        CompactParsedLog.StageSummary s = run.stages.get(hits.a[h]);
         long ss = s.submissionTimeMs;
         long se = s.completionTimeMs;
-        if (se <= ss) continue;
 
         long overlap = overlapMs(start, end, ss, se);
         if (overlap <= 0) continue;
@@ -64,4 +76,110 @@ public class RuleStageCorrelator {
     long e = Math.min(aEnd, bEnd);
     return Math.max(0L, e - s);
   }
+
+  /**
+   * Stages with a valid [submission, completion) interval, sorted by submission time, over an
+   * implicit segment tree holding the max completion time of each range. A query takes the
+   * prefix submitted before the window ends (binary search) and descends only into ranges
+   * whose max completion is after the window starts: O(log S + k log S) for k overlaps.
+   */
+  static final class StageIntervals {
+    private final int[] stage;  // index into the stage list
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnd; // segment tree, node 1 = [0, n)
+    private final int n;
+
+    StageIntervals(List<CompactParsedLog.StageSummary> stages) {
+      int[] valid = new int[stages.size()];
+      int m = 0;
+      long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+      for (int i = 0; i < stages.size(); i++) {
+        CompactParsedLog.StageSummary s = stages.get(i);
+        if (s.submissionTimeMs == null || s.completionTimeMs == null) continue;
+        if (s.completionTimeMs <= s.submissionTimeMs) continue;
+        valid[m++] = i;
+        min = Math.min(min, s.submissionTimeMs);
+        max = Math.max(max, s.submissionTimeMs);
+      }
+
+      n = m;
+      stage = sortedBySubmission(stages, valid, n, min, max);
+      starts = new long[n];
+      ends = new long[n];
+      for (int i = 0; i < n; i++) {
+        CompactParsedLog.StageSummary s = stages.get(stage[i]);
+        starts[i] = s.submissionTimeMs;
+        ends[i] = s.completionTimeMs;
+      }
+      maxEnd = new long[Math.max(1, 4 * n)];
+      if (n > 0) build(1, 0, n);
+    }
+
+    /**
+     * Sorts on packed (submission - min, index) longs to avoid boxing; falls back to a boxed
+     * sort if the time span is too wide to pack. Ties may come out in any order: queries
+     * re-sort their hits by index.
+     */
+    private static int[] sortedBySubmission(List<CompactParsedLog.StageSummary> stages, int[] valid, int n, long min, long max) {
+      int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, n));
+      int[] out = new int[n];
+      if (n > 0 && max - min >= 0 && max - min < (1L << (63 - bits))) {
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) packed[i] = (stages.get(valid[i]).submissionTimeMs - min) << bits | i;
+        Arrays.sort(packed);
+        long mask = (1L << bits) - 1;
+        for (int i = 0; i < n; i++) out[i] = valid[(int) (packed[i] & mask)];
+        return out;
+      }
+      Integer[] order = new Integer[n];
+      for (int i = 0; i < n; i++) order[i] = valid[i];
+      Arrays.sort(order, Comparator.comparingLong(i -> stages.get(i).submissionTimeMs));
+      for (int i = 0; i < n; i++) out[i] = order[i];
+      return out;
+    }
+
+    private long build(int node, int lo, int hi) {
+      if (hi - lo == 1) return maxEnd[node] = ends[lo];
+      int mid = (lo + hi) >>> 1;
+      return maxEnd[node] = Math.max(build(2 * node, lo, mid), build(2 * node + 1, mid, hi));
+    }
+
+    /** Adds the stage-list index of every stage with submission < end and completion > start. */
+    void overlapping(long start, long end, IntList out) {
+      int p = lowerBound(end); // stages [0, p) were submitted before the window ends
+      if (p > 0) collect(1, 0, n, p, start, out);
+    }
+
+    private void collect(int node, int lo, int hi, int p, long start, IntList out) {
+      if (lo >= p || maxEnd[node] <= start) return;
+      if (hi - lo == 1) {
+        out.add(stage[lo]);
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      collect(2 * node, lo, mid, p, start, out);
+      collect(2 * node + 1, mid, hi, p, start, out);
+    }
+
+    private int lowerBound(long key) {
+      int lo = 0, hi = n;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (starts[mid] < key) lo = mid + 1;
+        else hi = mid;
+      }
+      return lo;
+    }
+  }
+
+  static final class IntList {
+    int[] a = new int[16];
+    int size;
+
+    void add(int v) {
+      if (size == a.length) a = Arrays.copyOf(a, size * 2);
+      a[size++] = v;
+    }
+  }
 }
@@ -0,0 +1,172 @@
+package com.yourorg.sparklog;
+
+import java.io.*;
+
+/**
+ * Busy task-slot time per fixed time bucket, built from task launch/finish times.
+ *
+ * Buckets sit on an absolute grid ({@code floor(t / width)}), so slices parsed separately line
+ * up on merge. Adding a task is O(1) whatever its length: the partial first and last buckets
+ * get their milliseconds directly, and the full buckets in between go into a difference array
+ * of running-task counts that is folded in lazily ({@link #materialize}). Memory follows the
+ * app's time span, not the task count: once the used buckets would exceed {@link #MAX_BUCKETS}
+ * the width doubles and neighbouring buckets are summed. The width only depends on the span
+ * of the tasks seen, so merged slices end on the same grid as one sequential pass.
+ */
+final class SlotTimeline {
+  static final long INITIAL_WIDTH_MS = 1000;
+  static final int MAX_BUCKETS = 1 << 16;
+
+  private long width = INITIAL_WIDTH_MS;
+  private long origin;          // bucket index of ms[0]
+  private long usedLo, usedHi;  // bucket indices ever touched; everything outside is zero
+  private long[] ms;            // busy task-ms per bucket (partial coverage, plus folded-in full coverage)
+  private long[] cover;         // difference array: tasks covering a whole bucket
+  private boolean dirty;        // cover has unfolded entries
+  private long[] prefix;        // prefix[i] = sum of ms[0, i); dropped on any change
+
+  long widthMs() { return width; }
+
+  boolean isEmpty() { return ms == null; }
+
+  void add(long launchMs, long finishMs) {
+    if (launchMs <= 0 || finishMs <= launchMs) return;
+    ensure(Math.floorDiv(launchMs, width), Math.floorDiv(finishMs - 1, width));
+
+    long ia = Math.floorDiv(launchMs, width), ib = Math.floorDiv(finishMs - 1, width);
+    int a = (int) (ia - origin), b = (int) (ib - origin);
+    if (a == b) {
+      ms[a] += finishMs - launchMs;
+      return;
+    }
+    ms[a] += (ia + 1) * width - launchMs;
+    ms[b] += finishMs - ib * width;
+    if (b > a + 1) {
+      cover[a + 1]++;
+      cover[b]--;
+      dirty = true;
+    }
+  }
+
+  void mergeFrom(SlotTimeline o) {
+    if (o.ms == null) return;
+    o.materialize();
+    materialize();
+    if (ms == null) width = o.width;
+    while (width < o.width) coarsen();
+    // widths are INITIAL_WIDTH_MS * 2^k, so each of o's buckets nests inside one of ours
+    for (long j = o.usedLo; j <= o.usedHi; j++) {
+      long v = o.ms[(int) (j - o.origin)];
+      if (v == 0) continue;
+      long t = j * o.width;
+      ensure(Math.floorDiv(t, width), Math.floorDiv(t, width));
+      ms[(int) (Math.floorDiv(t, width) - origin)] += v;
+    }
+  }
+
+  /** Busy task-ms in [from, to), prorating the edge buckets. */
+  long busyMs(long from, long to) {
+    if (ms == null || to <= from) return 0;
+    materialize();
+    return cumulative(to) - cumulative(from);
+  }
+
+  private long cumulative(long t) {
+    if (prefix == null) {
+      prefix = new long[ms.length + 1];
+      for (int i = 0; i < ms.length; i++) prefix[i + 1] = prefix[i] + ms[i];
+    }
+    long idx = Math.floorDiv(t, width) - origin;
+    if (idx < 0) return 0;
+    if (idx >= ms.length) return prefix[ms.length];
+    int k = (int) idx;
+    long into = t - (origin + k) * width;
+    return prefix[k] + Math.round(ms[k] * (double) into / width);
+  }
+
+  /** Folds full-bucket coverage into ms. */
+  private void materialize() {
+    if (!dirty) return;
+    long run = 0;
+    for (int i = 0; i < ms.length; i++) {
+      run += cover[i];
+      ms[i] += run * width;
+      cover[i] = 0;
+    }
+    dirty = false;
+    prefix = null;
+  }
+
+  /** Makes buckets [lo, hi] addressable, coarsening while the used span would exceed MAX_BUCKETS. */
+  private void ensure(long lo, long hi) {
+    prefix = null;
+    if (ms == null) {
+      while (hi - lo + 1 > MAX_BUCKETS) {
+        width *= 2;
+        lo = Math.floorDiv(lo, 2);
+        hi = Math.floorDiv(hi, 2);
+      }
+      origin = usedLo = lo;
+      usedHi = hi;
+      ms = new long[(int) Math.min(MAX_BUCKETS, Math.max(64, hi - lo + 1))];
+      cover = new long[ms.length];
+      return;
+    }
+    while (Math.max(usedHi, hi) - Math.min(usedLo, lo) + 1 > MAX_BUCKETS) {
+      coarsen();
+      lo = Math.floorDiv(lo, 2);
+      hi = Math.floorDiv(hi, 2);
+    }
+    long oldLo = usedLo, oldHi = usedHi;
+    usedLo = Math.min(usedLo, lo);
+    usedHi = Math.max(usedHi, hi);
+    if (usedLo >= origin && usedHi < origin + ms.length) return;
+
+    // re-base with headroom on the side that needed it
+    int len = (int) Math.min(MAX_BUCKETS, Math.max(usedHi - usedLo + 1, 2L * ms.length));
+    long newOrigin = lo < origin ? usedHi - len + 1 : usedLo;
+    long[] m2 = new long[len], c2 = new long[len];
+    System.arraycopy(ms, (int) (oldLo - origin), m2, (int) (oldLo - newOrigin), (int) (oldHi - oldLo + 1));
+    System.arraycopy(cover, (int) (oldLo - origin), c2, (int) (oldLo - newOrigin), (int) (oldHi - oldLo + 1));
+    ms = m2;
+    cover = c2;
+    origin = newOrigin;
+  }
+
+  /** Doubles the bucket width; callers must recompute bucket indices afterwards. */
+  private void coarsen() {
+    materialize();
+    long newLo = Math.floorDiv(usedLo, 2), newHi = Math.floorDiv(usedHi, 2);
+    long[] m2 = new long[(int) Math.max(64, newHi - newLo + 1)];
+    for (long j = usedLo; j <= usedHi; j++) m2[(int) (Math.floorDiv(j, 2) - newLo)] += ms[(int) (j - origin)];
+    ms = m2;
+    cover = new long[m2.length];
+    origin = usedLo = newLo;
+    usedHi = newHi;
+    width *= 2;
+    prefix = null;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeBoolean(ms != null);
+    if (ms == null) return;
+    materialize();
+    out.writeLong(width);
+    out.writeLong(usedLo);
+    out.writeLong(usedHi);
+    for (long j = usedLo; j <= usedHi; j++) out.writeLong(ms[(int) (j - origin)]);
+  }
+
+  /** Fills an empty instance from {@link #write}. */
+  void read(DataInput in) throws IOException {
+    if (!in.readBoolean()) return;
+    width = in.readLong();
+    origin = usedLo = in.readLong();
+    usedHi = in.readLong();
+    ms = new long[(int) (usedHi - usedLo + 1)];
+    for (int i = 0; i < ms.length; i++) ms[i] = in.readLong();
+    cover = new long[ms.length];
+    dirty = false;
+    prefix = null;
+  }
+}
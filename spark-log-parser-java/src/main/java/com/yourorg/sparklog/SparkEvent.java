@@ -0,0 +1,169 @@
+package com.yourorg.sparklog;
+
+import java.util.*;
+
+/**
+ * Reusable scratch holder for the handful of fields the parser reads from one event line.
+ * Filled by {@link EventLogDecoder}; "has" flags mirror the null/non-number checks the
+ * handlers used to do on the JsonNode tree.
+ */
+final class SparkEvent {
+  EventType type;
+
+  boolean hasTimestamp;
+  long timestamp;
+  String appId;
+  final Map<String, String> sparkProperties = new LinkedHashMap<>();
+
+  // "Stage Info" (StageSubmitted / StageCompleted, older TaskEnd)
+  boolean hasStageInfo;
+  int siStageId, siAttemptId;
+  boolean siStageIdIsNumber, siAttemptIdIsNumber;
+  String siName;
+  boolean siHasSubmission, siHasCompletion, siHasNumTasks;
+  long siSubmissionTimeMs, siCompletionTimeMs, siNumTasks;
+  final Ints siParentIds = new Ints();
+
+  // JobStart / JobEnd
+  boolean hasJobId, hasJobSubmission, hasJobCompletion;
+  int jobId;
+  long jobSubmissionTimeMs, jobCompletionTimeMs;
+  String jobResult;
+  final Ints jobStageIds = new Ints();
+  // JobStart "Stage Infos", flattened: stageId, parent count, parent ids..., per stage
+  final Ints jobStageParents = new Ints();
+  // JobStart "Properties"
+  boolean hasSqlExecutionId;
+  long sqlExecutionId;
+
+  // SQLExecutionStart / End; "physicalPlanDescription" and "sparkPlanInfo" are skipped unread
+  boolean hasExecutionId, hasTime;
+  long executionId, time;
+  String description, errorMessage;
+
+  // "sparkPlanInfo" of SQLExecutionStart / SQLAdaptiveExecutionUpdate, flattened to the operators
+  // that have metrics (children first), or the "sqlPlanMetrics" of SQLAdaptiveSQLMetricUpdates as
+  // one node; null when absent. Rare events, so plain objects.
+  List<PlanNode> planNodes;
+
+  // accumulator updates: a task's non-internal "Accumulables", or DriverAccumUpdates
+  final Longs accumIds = new Longs();
+  final Longs accumUpdates = new Longs();
+
+  // TaskEnd top-level stage ids (Spark 3.5.x)
+  boolean hasStageId, hasAttemptId;
+  int stageId, attemptId;
+
+  // "Task Info"; ids are kept as chars so they can be interned without a String per task
+  long launchTimeMs, finishTimeMs;
+  final Chars executorId = new Chars();
+  final Chars host = new Chars();
+
+  // "Task Metrics"
+  boolean hasTaskMetrics;
+  long executorRunTimeMs, gcTimeMs;
+  long memoryBytesSpilled, diskBytesSpilled;
+  long remoteBytesRead, localBytesRead, fetchWaitTimeMs;
+  long shuffleBytesWritten;
+
+  void reset() {
+    type = null;
+    hasTimestamp = false;
+    timestamp = 0L;
+    appId = null;
+    sparkProperties.clear();
+
+    hasStageInfo = false;
+    siStageId = siAttemptId = 0;
+    siStageIdIsNumber = siAttemptIdIsNumber = false;
+    siName = null;
+    siHasSubmission = siHasCompletion = siHasNumTasks = false;
+    siSubmissionTimeMs = siCompletionTimeMs = siNumTasks = 0L;
+    siParentIds.clear();
+
+    hasJobId = hasJobSubmission = hasJobCompletion = false;
+    jobId = 0;
+    jobSubmissionTimeMs = jobCompletionTimeMs = 0L;
+    jobResult = null;
+    jobStageIds.clear();
+    jobStageParents.clear();
+    hasSqlExecutionId = false;
+    sqlExecutionId = 0L;
+
+    hasExecutionId = hasTime = false;
+    executionId = time = 0L;
+    description = errorMessage = null;
+    planNodes = null;
+    accumIds.clear();
+    accumUpdates.clear();
+
+    hasStageId = hasAttemptId = false;
+    stageId = attemptId = 0;
+
+    launchTimeMs = finishTimeMs = 0L;
+    executorId.clear();
+    host.clear();
+
+    hasTaskMetrics = false;
+    resetTaskMetrics();
+  }
+
+  void resetTaskMetrics() {
+    executorRunTimeMs = gcTimeMs = 0L;
+    memoryBytesSpilled = diskBytesSpilled = 0L;
+    remoteBytesRead = localBytesRead = fetchWaitTimeMs = 0L;
+    shuffleBytesWritten = 0L;
+  }
+
+  /** Reusable int list for id arrays. */
+  static final class Ints {
+    int[] a = new int[16];
+    int size;
+
+    void add(int v) {
+      if (size == a.length) a = Arrays.copyOf(a, size * 2);
+      a[size++] = v;
+    }
+
+    int[] toArray() { return Arrays.copyOf(a, size); }
+
+    void clear() { size = 0; }
+  }
+
+  static final class Longs {
+    long[] a = new long[16];
+    int size;
+
+    void add(long v) {
+      if (size == a.length) a = Arrays.copyOf(a, size * 2);
+      a[size++] = v;
+    }
+
+    void clear() { size = 0; }
+  }
+
+  /** One SQL plan operator and its metric accumulators. */
+  static final class PlanNode {
+    String nodeName;
+    String simpleString; // first {@link EventLogDecoder#MAX_PLAN_STRING_CHARS} chars
+    final List<String> metricNames = new ArrayList<>();
+    final List<String> metricTypes = new ArrayList<>();
+    final Longs accumulatorIds = new Longs();
+  }
+
+  /** Reusable char slice for a string field; {@code len < 0} when the field was absent. */
+  static final class Chars {
+    char[] buf = new char[64];
+    int len = -1;
+
+    void set(char[] src, int off, int n) {
+      if (buf.length < n) buf = new char[Math.max(n, buf.length * 2)];
+      System.arraycopy(src, off, buf, 0, n);
+      len = n;
+    }
+
+    boolean present() { return len >= 0; }
+
+    void clear() { len = -1; }
+  }
+}
@@ -1,221 +1,405 @@
 package com.yourorg.sparklog;
 
-import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.util.*;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.*;
+import java.util.regex.*;
 
 public class SparkEventLogParser {
-  private static final ObjectMapper M = new ObjectMapper();
-
-  private static final List<String> CONF_PREFIXES = List.of(
-      "spark.sql.adaptive.",
-      "spark.sql.adaptive.skewJoin.",
-      "spark.sql.shuffle.partitions",
-      "spark.sql.autoBroadcastJoinThreshold",
-      "spark.sql.files.maxPartitionBytes",
-      "spark.sql.join.preferSortMergeJoin",
-      "spark.dynamicAllocation.",
-      "spark.executor.",
-      "spark.sql.parquet.",
-      "spark.sql.catalog.",
-      "spark.sql.iceberg."
-  );
-
-  private final Map<String, StageAgg> stages = new HashMap<>();
+  // below this an uncompressed log is not worth splitting
+  private static final long MIN_SPLIT_BYTES = 64L << 20;
+  private static final long MIN_RANGE_BYTES = 16L << 20;
+  private static final int RANGES_PER_WORKER = 4;
+  private static final int MAX_PIPELINE_WORKERS = 4;
+  // slot occupancy series length cap
+  private static final int MAX_OCCUPANCY_POINTS = 500;
+
+  // Spark 3 rolling event logs: eventlog_v2_<appId>/events_<index>_<appId>[.<codec>]
+  private static final Pattern ROLLING_SEGMENT = Pattern.compile("events_(\\d+)_.*");
+
+  private final int parallelism;
+  private final long exactBudgetBytes;
+
   private final TreeMap<Long, Integer> execCountTimeline = new TreeMap<>();
   private int currentExecutors = 0;
 
-  // Debug counters
-  private long seenLines = 0;
-  private long seenTaskEnd = 0;
-  private long seenTaskEndMissingStage = 0;
-  private long seenTaskEndMissingMetrics = 0;
-
   private CompactParsedLog out;
+  private ParseState state;
+  private DurationSpool spool;
+
+  // outcome of the last parse(Path, Path)
+  private boolean checkpointUsed;
+  private long resumedAt;
+  private long parsedBytes;
+  private long partialBytes;
+
+  public SparkEventLogParser() { this(Runtime.getRuntime().availableProcessors()); }
+
+  /**
+   * @param parallelism worker threads for splitting a large uncompressed log, pipelining a
+   *                    compressed one or parsing rolling segments; 1 = single pass
+   */
+  public SparkEventLogParser(int parallelism) { this(parallelism, 0); }
+
+  /**
+   * @param exactBudgetBytes if > 0, task-duration percentiles are exact: durations are kept in
+   *                         memory up to this many bytes and spilled to temp files beyond it
+   */
+  public SparkEventLogParser(int parallelism, long exactBudgetBytes) {
+    this.parallelism = Math.max(1, parallelism);
+    this.exactBudgetBytes = exactBudgetBytes;
+  }
 
   public CompactParsedLog parse(Path eventLog) throws Exception {
-    out = new CompactParsedLog();
-    out.status = "UNKNOWN";
-
-    try (BufferedReader br = open(eventLog)) {
-      String line;
-      while ((line = br.readLine()) != null) {
-        seenLines++;
-        if (line.isBlank()) continue;
+    spool = exactBudgetBytes > 0 ? new DurationSpool(exactBudgetBytes, parallelism) : null;
+    try {
+      state = Files.isDirectory(eventLog) ? parseRolling(eventLog) : parseFile(eventLog);
+      build(state);
+    } finally {
+      if (spool != null) spool.close();
+      spool = null;
+    }
 
-        JsonNode e = M.readTree(line);
-        JsonNode ev = e.get("Event");
-        if (ev == null) continue;
+    logCounts();
+    return out;
+  }
 
-        switch (ev.asText()) {
-          case "SparkListenerApplicationStart" -> onAppStart(e);
-          case "SparkListenerApplicationEnd" -> onAppEnd(e);
-          case "SparkListenerEnvironmentUpdate" -> onEnvUpdate(e);
+  /**
+   * Like {@link #parse(Path)}, but resumes from {@code checkpoint} when it matches the log and
+   * rewrites it afterwards, so a log that keeps growing between runs is only parsed from where
+   * the previous run stopped. The checkpoint ends at the last complete line; an unterminated
+   * last line is parsed for this run's output only, and skipped if it is not valid JSON yet.
+   * Rolling directories, compressed logs and exact-percentile mode are parsed in full without a
+   * checkpoint (see {@link #checkpointUsed}).
+   */
+  public CompactParsedLog parse(Path eventLog, Path checkpoint) throws Exception {
+    checkpointUsed = false;
+    resumedAt = -1;
+    parsedBytes = 0;
+    partialBytes = 0;
+    if (exactBudgetBytes > 0 || Files.isDirectory(eventLog) || EventLogCodec.detect(eventLog) != EventLogCodec.NONE) {
+      return parse(eventLog);
+    }
 
-          case "SparkListenerExecutorAdded" -> onExecAdded(e);
-          case "SparkListenerExecutorRemoved" -> onExecRemoved(e);
+    try (FileChannel ch = FileChannel.open(eventLog, StandardOpenOption.READ)) {
+      long size = ch.size();
+      ParseCheckpoint cp = ParseCheckpoint.read(checkpoint, ch);
 
-          case "SparkListenerStageSubmitted" -> onStageSubmitted(e);
-          case "SparkListenerStageCompleted" -> onStageCompleted(e);
+      List<ParseState> parts = new ArrayList<>();
+      long from = 0, seq = 0;
+      if (cp != null) {
+        parts.add(cp.state);
+        from = cp.offset;
+        seq = cp.nextSeq;
+      }
 
-          case "SparkListenerTaskEnd" -> onTaskEnd(e);
-          default -> { /* ignore */ }
+      long end = lastLineEnd(ch, from, size);
+      List<ParseState> delta = parseRanges(ch, from, end, seq);
+      parts.addAll(delta);
+      seq += delta.size();
+
+      ParseState done = ParseState.merge(parts);
+      ParseCheckpoint.write(checkpoint, ch, end, seq, done);
+      checkpointUsed = true;
+      resumedAt = cp != null ? cp.offset : -1;
+      parsedBytes = end - from;
+
+      state = done;
+      if (end < size) {
+        ParseState partial = newState(seq);
+        try {
+          MappedLineReader.forEachLine(ch, end, size, partial::onLine);
+          state = ParseState.merge(List.of(done, partial));
+        } catch (JsonProcessingException e) {
+          partialBytes = size - end;
         }
       }
     }
+    build(state);
+
+    logCounts();
+    return out;
+  }
 
-    finalizeStages();
+  /**
+   * Builds the output from parsed state. The state is only read, so it can keep receiving
+   * lines afterwards and be built again (see {@link EventLogTailer}).
+   */
+  CompactParsedLog build(ParseState st) throws IOException {
+    out = new CompactParsedLog();
+    out.status = "UNKNOWN";
+    execCountTimeline.clear();
+    currentExecutors = 0;
+
+    finalizeApp(st);
+    finalizeExecutors(st);
+    finalizeStages(st);
+    finalizeJobs(st);
+    finalizeSql(st);
+    finalizeNodes(st);
     finalizeExecutorsAvg();
+    finalizeSlots(st);
     finalizeStatus();
 
     out.utilization = UtilizationScorer.score(out);
-
-    System.out.println("Parsed lines=" + seenLines
-        + " TaskEnd=" + seenTaskEnd
-        + " TaskEndMissingStage=" + seenTaskEndMissingStage
-        + " TaskEndMissingMetrics=" + seenTaskEndMissingMetrics
-        + " stagesBuilt=" + out.stages.size());
-
     return out;
   }
 
-  private BufferedReader open(Path file) throws IOException {
-    InputStream fis = Files.newInputStream(file);
-    InputStream in = file.toString().endsWith(".gz") ? new GZIPInputStream(fis) : fis;
-    return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+  private void logCounts() {
+    System.out.println("Parsed lines=" + state.seenLines
+        + " TaskEnd=" + state.seenTaskEnd
+        + " TaskEndMissingStage=" + state.seenTaskEndMissingStage
+        + " TaskEndMissingMetrics=" + state.seenTaskEndMissingMetrics
+        + " stagesBuilt=" + out.stages.size()
+        + " skipped=" + state.prefilter.skippedTotal() + " " + state.prefilter.skippedByType());
   }
 
-  private void onAppStart(JsonNode e) {
-    out.appId = textAt(e, "App ID");
-    out.startTimeMs = longAtOrNull(e, "Timestamp");
-  }
+  /** True if the last {@link #parse(Path, Path)} read and rewrote its checkpoint. */
+  public boolean checkpointUsed() { return checkpointUsed; }
 
-  private void onAppEnd(JsonNode e) {
-    out.endTimeMs = longAtOrNull(e, "Timestamp");
-    if (out.startTimeMs != null && out.endTimeMs != null) {
-      out.durationMs = out.endTimeMs - out.startTimeMs;
-    }
-  }
+  /** Offset the last checkpointed parse resumed from, or -1 if it started from the beginning. */
+  public long checkpointResumedAt() { return resumedAt; }
 
-  private void onEnvUpdate(JsonNode e) {
-    JsonNode props = e.get("Spark Properties");
-    if (props == null || !props.isObject()) return;
+  /** Bytes the last checkpointed parse read past its starting offset. */
+  public long checkpointParsedBytes() { return parsedBytes; }
 
-    props.fields().forEachRemaining(kv -> {
-      String k = kv.getKey();
-      String v = kv.getValue().asText();
-      if (keepConf(k)) out.sparkConf.put(k, v);
-    });
+  /** Bytes of an unterminated last line that was not valid JSON yet and was left for the next run; 0 if none. */
+  public long droppedPartialLineBytes() { return partialBytes; }
 
-    if (out.executors.executorCores == null) {
-      String cores = out.sparkConf.get("spark.executor.cores");
-      if (cores != null) {
-        try { out.executors.executorCores = Integer.parseInt(cores.trim()); } catch (Exception ignored) {}
-      }
-    }
+  /** Lines skipped by the byte-level prefilter, per event type. */
+  public Map<String, Long> skippedEventCounts() {
+    return state != null ? state.prefilter.skippedByType() : Map.of();
   }
 
-  private void onExecAdded(JsonNode e) {
-    long ts = longAt(e, "Timestamp", 0L);
-    currentExecutors += 1;
-    execCountTimeline.put(ts, currentExecutors);
-
-    out.executors.totalAdded++;
-    out.executors.maxExecutors = Math.max(out.executors.maxExecutors, currentExecutors);
+  private ParseState parseFile(Path file) throws Exception {
+    EventLogCodec codec = EventLogCodec.detect(file);
+    if (canSplit(file, codec)) return parseRanges(file);
+    if (canPipeline(codec)) return parsePipelined(file, codec);
+    return parseSequential(file, codec, 0);
   }
 
-  private void onExecRemoved(JsonNode e) {
-    long ts = longAt(e, "Timestamp", 0L);
-    currentExecutors = Math.max(0, currentExecutors - 1);
-    execCountTimeline.put(ts, currentExecutors);
-    out.executors.totalRemoved++;
+  private ParseState parseSequential(Path file, EventLogCodec codec, long seq) throws IOException {
+    ParseState st = newState(seq);
+    if (codec == EventLogCodec.NONE) {
+      try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+        MappedLineReader.forEachLine(ch, 0, ch.size(), st::onLine);
+      }
+    } else {
+      try (InputStream in = codec.open(file)) {
+        ByteLineReader.forEachLine(in, st::onLine);
+      }
+    }
+    st.finish();
+    return st;
   }
 
-  private void onStageSubmitted(JsonNode e) {
-    JsonNode info = e.get("Stage Info");
-    if (info == null) return;
+  private ParseState newState(long seq) { return new ParseState(seq, spool); }
 
-    int stageId = intAt(info, "Stage ID");
-    int attemptId = intAt(info, "Stage Attempt ID");
+  // ---------- pipelined decompression ----------
 
-    StageAgg a = stages.computeIfAbsent(key(stageId, attemptId), k -> new StageAgg(stageId, attemptId));
-    a.name = textAt(info, "Stage Name");
-    a.submissionTimeMs = longAtOrNull(info, "Submission Time");
-    a.numTasks = longAt(info, "Number of Tasks", a.numTasks);
+  private boolean canPipeline(EventLogCodec codec) {
+    return parallelism > 1 && codec != EventLogCodec.NONE;
   }
 
-  private void onStageCompleted(JsonNode e) {
-    JsonNode info = e.get("Stage Info");
-    if (info == null) return;
+  /**
+   * Decompresses on one thread and parses on up to {@code parallelism - 1} others, so inflation and
+   * JSON work overlap instead of taking turns. Memory is bounded by the pipeline's block pool.
+   */
+  private ParseState parsePipelined(Path file, EventLogCodec codec) throws Exception {
+    int workers = Math.max(1, Math.min(parallelism - 1, MAX_PIPELINE_WORKERS));
+
+    List<ParseState> parts = new ArrayList<>(workers);
+    List<PipelinedLineReader.BlockSink> sinks = new ArrayList<>(workers);
+    for (int i = 0; i < workers; i++) {
+      ParseState st = newState(0);
+      parts.add(st);
+      sinks.add((seq, buf, len) -> {
+        st.seq = seq;
+        ByteLineReader.forEachLine(buf, 0, len, st::onLine);
+      });
+    }
 
-    int stageId = intAt(info, "Stage ID");
-    int attemptId = intAt(info, "Stage Attempt ID");
+    try (InputStream in = codec.open(file)) {
+      new PipelinedLineReader(workers).run(in, sinks);
+    }
+    return ParseState.merge(parts);
+  }
 
-    StageAgg a = stages.computeIfAbsent(key(stageId, attemptId), k -> new StageAgg(stageId, attemptId));
-    a.name = textAt(info, "Stage Name");
-    a.submissionTimeMs = longAtOrNull(info, "Submission Time");
-    a.completionTimeMs = longAtOrNull(info, "Completion Time");
-    if (a.submissionTimeMs != null && a.completionTimeMs != null) a.durationMs = a.completionTimeMs - a.submissionTimeMs;
+  // ---------- rolling event log directory ----------
+
+  /**
+   * Parses every {@code events_N_*} segment of a rolling log directory concurrently, one
+   * {@link ParseState} per segment tagged with its index, so the merge sees segment order.
+   * Largest segments are scheduled first; wall time tends towards that of the largest one.
+   */
+  private ParseState parseRolling(Path dir) throws Exception {
+    List<Path> segments = rollingSegments(dir);
+    if (segments.isEmpty()) throw new IOException("No events_N_* segments in " + dir);
+    if (segments.size() == 1) return parseFile(segments.get(0));
+
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < segments.size(); i++) order.add(i);
+    long[] sizes = new long[segments.size()];
+    for (int i = 0; i < sizes.length; i++) sizes[i] = Files.size(segments.get(i));
+    order.sort((a, b) -> Long.compare(sizes[b], sizes[a]));
+
+    List<Callable<ParseState>> tasks = new ArrayList<>(order.size());
+    for (int i : order) {
+      Path seg = segments.get(i);
+      tasks.add(() -> parseSequential(seg, EventLogCodec.detect(seg), i));
+    }
+    return ParseState.merge(runAll(tasks));
+  }
 
-    Long nt = longAtOrNull(info, "Number of Tasks");
-    if (nt != null) a.numTasks = nt;
+  /** Segment files ordered by their index (numerically, so events_10 follows events_9). */
+  static List<Path> rollingSegments(Path dir) throws IOException {
+    List<Path> segs = new ArrayList<>();
+    Map<Path, Long> index = new HashMap<>();
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+      for (Path p : ds) {
+        Matcher m = ROLLING_SEGMENT.matcher(p.getFileName().toString());
+        if (!m.matches() || !Files.isRegularFile(p)) continue;
+        segs.add(p);
+        index.put(p, Long.parseLong(m.group(1)));
+      }
+    }
+    segs.sort(Comparator.comparingLong(index::get));
+    return segs;
   }
 
-  // Spark 3.5.x TaskEnd: Stage ID is usually TOP-LEVEL, not in "Stage Info".
-  private void onTaskEnd(JsonNode e) {
-    seenTaskEnd++;
+  // ---------- parallel byte ranges ----------
 
-    Integer stageId = intAtOrNull(e, "Stage ID");
-    Integer attemptId = intAtOrNull(e, "Stage Attempt ID");
+  private boolean canSplit(Path file, EventLogCodec codec) throws IOException {
+    return parallelism > 1
+        && codec == EventLogCodec.NONE
+        && Files.size(file) >= MIN_SPLIT_BYTES;
+  }
 
-    if (stageId == null || attemptId == null) {
-      JsonNode stageInfo = e.get("Stage Info");
-      if (stageInfo != null) {
-        stageId = intAtOrNull(stageInfo, "Stage ID");
-        attemptId = intAtOrNull(stageInfo, "Stage Attempt ID");
-      }
+  /**
+   * Splits the file into newline-aligned byte ranges and parses them on a fork-join pool, one
+   * {@link ParseState} per range. States are merged in range order, which is file order.
+   */
+  private ParseState parseRanges(Path file) throws Exception {
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      return ParseState.merge(parseRanges(ch, 0, ch.size(), 0));
     }
+  }
 
-    if (stageId == null || attemptId == null) {
-      seenTaskEndMissingStage++;
-      return;
+  /** One state per newline-aligned range of [from, end), tagged seqBase, seqBase + 1, ... */
+  private List<ParseState> parseRanges(FileChannel ch, long from, long end, long seqBase) throws Exception {
+    long[] bounds = splitPoints(ch, from, end);
+    int n = bounds.length - 1;
+
+    List<Callable<ParseState>> tasks = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      final int r = i;
+      tasks.add(() -> {
+        ParseState st = newState(seqBase + r);
+        MappedLineReader.forEachLine(ch, bounds[r], bounds[r + 1], st::onLine);
+        st.finish();
+        return st;
+      });
     }
+    return runAll(tasks);
+  }
 
-    StageAgg a = stages.computeIfAbsent(key(stageId, attemptId), k -> new StageAgg(stageId, attemptId));
+  private List<ParseState> runAll(List<Callable<ParseState>> tasks) throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(parallelism, tasks.size())));
+    try {
+      List<ParseState> parts = new ArrayList<>(tasks.size());
+      for (Future<ParseState> f : pool.invokeAll(tasks)) {
+        try {
+          parts.add(f.get());
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception x) throw x;
+          throw e;
+        }
+      }
+      return parts;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
 
-    long launch = longAt(e, "Task Info", "Launch Time", 0L);
-    long finish = longAt(e, "Task Info", "Finish Time", 0L);
-    long taskDur = (launch > 0 && finish > 0) ? (finish - launch) : 0L;
-    if (taskDur > 0) a.taskDurations.add(taskDur);
+  /** Range boundaries in [from, end], each moved forward to just past the next '\n'. */
+  private long[] splitPoints(FileChannel ch, long from, long end) throws IOException {
+    long size = end - from;
+    int want = (int) Math.max(1, Math.min((long) parallelism * RANGES_PER_WORKER, size / MIN_RANGE_BYTES));
+    long step = size / want;
+
+    long[] b = new long[want + 1];
+    int n = 0;
+    b[n++] = from;
+    ByteBuffer bb = ByteBuffer.allocate(64 << 10);
+    for (int i = 1; i < want; i++) {
+      long p = nextLineStart(ch, Math.max(b[n - 1], from + i * step), end, bb);
+      if (p > b[n - 1] && p < end) b[n++] = p;
+    }
+    b[n++] = end;
+    return Arrays.copyOf(b, n);
+  }
 
-    JsonNode tm = e.get("Task Metrics");
-    if (tm == null || !tm.isObject()) {
-      seenTaskEndMissingMetrics++;
-      return;
+  private static long nextLineStart(FileChannel ch, long pos, long end, ByteBuffer bb) throws IOException {
+    while (pos < end) {
+      bb.clear();
+      int r = ch.read(bb, pos);
+      if (r <= 0) break;
+      for (int i = 0; i < r; i++) if (bb.get(i) == '\n') return pos + i + 1;
+      pos += r;
     }
+    return end;
+  }
 
-    a.executorRunTimeMs += longAt(tm, "Executor Run Time", 0L);
-    a.gcTimeMs += longAt(tm, "JVM GC Time", 0L);
+  /** Position just past the last '\n' in [from, end), or {@code from} if there is none. */
+  private static long lastLineEnd(FileChannel ch, long from, long end) throws IOException {
+    ByteBuffer bb = ByteBuffer.allocate(64 << 10);
+    long pos = end;
+    while (pos > from) {
+      int len = (int) Math.min(bb.capacity(), pos - from);
+      bb.clear().limit(len);
+      long at = pos - len;
+      while (bb.hasRemaining()) if (ch.read(bb, at + bb.position()) < 0) throw new EOFException("event log truncated while reading");
+      for (int i = len - 1; i >= 0; i--) if (bb.get(i) == '\n') return at + i + 1;
+      pos = at;
+    }
+    return from;
+  }
 
-    a.spillMemBytes += longAt(tm, "Memory Bytes Spilled", 0L);
-    a.spillDiskBytes += longAt(tm, "Disk Bytes Spilled", 0L);
+  // ---------- finalize ----------
 
-    JsonNode sr = tm.get("Shuffle Read Metrics");
-    if (sr != null && sr.isObject()) {
-      a.shuffleReadBytes += longAt(sr, "Remote Bytes Read", 0L) + longAt(sr, "Local Bytes Read", 0L);
+  private void finalizeApp(ParseState st) {
+    out.appId = st.appId;
+    out.startTimeMs = st.startTimeMs;
+    out.endTimeMs = st.endTimeMs;
+    if (out.startTimeMs != null && out.endTimeMs != null) {
+      out.durationMs = out.endTimeMs - out.startTimeMs;
     }
+    st.sparkConf.forEach(out.sparkConf::put);
+    out.executors.executorCores = st.executorCores;
+  }
 
-    JsonNode sw = tm.get("Shuffle Write Metrics");
-    if (sw != null && sw.isObject()) {
-      a.shuffleWriteBytes += longAt(sw, "Shuffle Bytes Written", 0L);
+  /** Replays executor add/remove in file order; the timeline itself is keyed by timestamp. */
+  private void finalizeExecutors(ParseState st) {
+    for (int i = 0; i < st.execEvents; i++) {
+      long ts = st.execTs[i];
+      if (st.execDelta[i] > 0) {
+        currentExecutors += 1;
+        out.executors.totalAdded++;
+        out.executors.maxExecutors = Math.max(out.executors.maxExecutors, currentExecutors);
+      } else {
+        currentExecutors = Math.max(0, currentExecutors - 1);
+        out.executors.totalRemoved++;
+      }
+      execCountTimeline.put(ts, currentExecutors);
     }
   }
 
-  private void finalizeStages() {
-    for (StageAgg a : stages.values()) {
+  private void finalizeStages(ParseState state) throws IOException {
+    for (ParseState.StageAgg a : state.stages.values()) {
       CompactParsedLog.StageSummary s = new CompactParsedLog.StageSummary();
       s.stageId = a.stageId;
       s.attemptId = a.attemptId;
@@ -226,6 +410,8 @@ public class SparkEventLogParser {
       s.durationMs = a.durationMs;
 
       s.numTasks = a.numTasks;
+      int[] parents = state.stageParents.get(a.stageId);
+      if (parents != null) for (int pid : parents) s.parentIds.add(pid);
 
       s.executorRunTimeMs = a.executorRunTimeMs;
       s.gcTimeMs = a.gcTimeMs;
@@ -236,10 +422,12 @@ public class SparkEventLogParser {
       s.spillMemBytes = a.spillMemBytes;
       s.spillDiskBytes = a.spillDiskBytes;
 
-      SkewStats st = SkewStats.from(a.taskDurations);
+      SkewStats st = a.exactDurations != null ? SkewStats.exact(spool, a.exactDurations) : SkewStats.from(a.taskDurations);
       s.maxTaskDurationMs = st.max;
       s.p50TaskDurationMs = st.p50;
       s.p95TaskDurationMs = st.p95;
+      s.p99TaskDurationMs = st.p99;
+      s.p999TaskDurationMs = st.p999;
       s.maxOverP50 = (st.p50 > 0) ? (st.max / st.p50) : 0.0;
       s.stragglerPct = st.stragglerPct;
 
@@ -250,6 +438,161 @@ public class SparkEventLogParser {
         .thenComparingInt(x -> x.attemptId));
   }
 
+  private void finalizeJobs(ParseState st) {
+    for (ParseState.JobAgg a : st.jobs.values()) {
+      CompactParsedLog.JobSummary j = new CompactParsedLog.JobSummary();
+      j.jobId = a.jobId;
+      j.submissionTimeMs = a.submissionTimeMs;
+      j.completionTimeMs = a.completionTimeMs;
+      if (a.submissionTimeMs != null && a.completionTimeMs != null) j.durationMs = a.completionTimeMs - a.submissionTimeMs;
+      j.result = a.result;
+      j.sqlExecutionId = a.sqlExecutionId;
+      if (a.stageIds != null) for (int id : a.stageIds) j.stageIds.add(id);
+      out.jobs.add(j);
+    }
+    out.jobs.sort(Comparator.comparingInt(j -> j.jobId));
+
+    CriticalPathAnalyzer.analyze(out);
+  }
+
+  /**
+   * Per-query totals. A stage attempt counts towards the query of the job that ran it: the
+   * latest job listing the stage that was submitted before the attempt (later jobs list it too,
+   * as skipped).
+   */
+  private void finalizeSql(ParseState st) {
+    if (st.sqls.size() == 0) return;
+
+    Map<Long, CompactParsedLog.SqlExecution> byId = new HashMap<>();
+    for (ParseState.SqlAgg a : st.sqls.values()) {
+      CompactParsedLog.SqlExecution q = new CompactParsedLog.SqlExecution();
+      q.executionId = a.executionId;
+      q.description = a.description;
+      q.startTimeMs = a.startTimeMs;
+      q.endTimeMs = a.endTimeMs;
+      if (a.startTimeMs != null && a.endTimeMs != null) q.durationMs = a.endTimeMs - a.startTimeMs;
+      q.errorMessage = a.errorMessage;
+      byId.put(q.executionId, q);
+    }
+
+    Map<Integer, List<CompactParsedLog.JobSummary>> jobsByStage = new HashMap<>();
+    for (CompactParsedLog.JobSummary j : out.jobs) {
+      if (j.sqlExecutionId == null) continue;
+      CompactParsedLog.SqlExecution q = byId.get(j.sqlExecutionId);
+      if (q != null) q.jobIds.add(j.jobId);
+      for (int id : j.stageIds) jobsByStage.computeIfAbsent(id, k -> new ArrayList<>()).add(j);
+    }
+
+    Map<Long, ParseState.StageAgg> aggs = new HashMap<>();
+    for (ParseState.StageAgg a : st.stages.values()) aggs.put(LongObjectMap.pack(a.stageId, a.attemptId), a);
+
+    for (CompactParsedLog.StageSummary s : out.stages) {
+      List<CompactParsedLog.JobSummary> js = jobsByStage.get(s.stageId);
+      if (js == null) continue;
+      CompactParsedLog.JobSummary owner = null;
+      for (CompactParsedLog.JobSummary j : js) {
+        boolean before = j.submissionTimeMs == null || s.submissionTimeMs == null || j.submissionTimeMs <= s.submissionTimeMs;
+        if (before && (owner == null || j.jobId > owner.jobId)) owner = j;
+      }
+      if (owner == null) owner = js.get(0);
+      CompactParsedLog.SqlExecution q = byId.get(owner.sqlExecutionId);
+      if (q == null) continue;
+
+      if (!q.stageIds.contains(s.stageId)) q.stageIds.add(s.stageId);
+      q.numTasks += s.numTasks;
+      q.taskTimeMs += aggs.get(LongObjectMap.pack(s.stageId, s.attemptId)).taskTimeMs;
+      q.executorRunTimeMs += s.executorRunTimeMs;
+      q.gcTimeMs += s.gcTimeMs;
+      q.shuffleReadBytes += s.shuffleReadBytes;
+      q.shuffleWriteBytes += s.shuffleWriteBytes;
+      q.spillMemBytes += s.spillMemBytes;
+      q.spillDiskBytes += s.spillDiskBytes;
+    }
+
+    out.sqlExecutions.addAll(byId.values());
+    out.sqlExecutions.sort(Comparator.comparingLong(q -> q.executionId));
+    finalizeSqlOperators(st, byId);
+  }
+
+  /** Plan operators joined with their summed accumulator updates (tasks and driver). */
+  private void finalizeSqlOperators(ParseState st, Map<Long, CompactParsedLog.SqlExecution> byId) {
+    List<ParseState.PlanOp> ops = st.planOps.values();
+    ops.sort(Comparator.comparingLong(o -> o.accumulatorIds[0])); // ids are handed out as the plan is built
+    for (ParseState.PlanOp o : ops) {
+      CompactParsedLog.SqlExecution q = byId.get(o.executionId);
+      if (q == null) continue;
+
+      CompactParsedLog.SqlOperator op = new CompactParsedLog.SqlOperator();
+      op.nodeName = o.nodeName;
+      op.description = o.simpleString;
+      boolean updated = false;
+      for (int i = 0; i < o.accumulatorIds.length; i++) {
+        long id = o.accumulatorIds[i];
+        if (!st.accums.containsKey(id)) continue;
+        updated = true;
+        long v = st.accums.get(id);
+        String type = o.metricTypes[i];
+        if ("nsTiming".equals(type)) v /= 1_000_000L;
+        if ("timing".equals(type) || "nsTiming".equals(type)) op.timeMs += v;
+        op.metrics.merge(o.metricNames[i] == null ? "accumulator " + id : o.metricNames[i], v, Long::sum);
+      }
+      if (updated) q.operators.add(op);
+    }
+  }
+
+  private void finalizeNodes(ParseState st) {
+    NodeStats ns = st.nodes;
+    out.executorStats = nodeSummaries(ns.executorNames, ns.executors);
+    for (int i = 0; i < out.executorStats.size(); i++) {
+      int h = ns.hostOf(i);
+      out.executorStats.get(i).host = h >= 0 ? ns.hostNames.name(h) : null;
+    }
+    out.hostStats = nodeSummaries(ns.hostNames, ns.hosts);
+
+    for (ParseState.StageAgg a : st.stages.values()) {
+      addBadNodes(a, "executor", ns.executorNames, NodeStats.outliers(a.byExecutor));
+      addBadNodes(a, "host", ns.hostNames, NodeStats.outliers(a.byExecutor.byHost(ns)));
+    }
+    out.badNodes.sort(Comparator.comparingInt((CompactParsedLog.BadNode b) -> b.stageId)
+        .thenComparingInt(b -> b.attemptId)
+        .thenComparing(b -> b.kind)
+        .thenComparing(b -> -b.slowdown)
+        .thenComparing(b -> b.id));
+  }
+
+  private static List<CompactParsedLog.NodeSummary> nodeSummaries(NameTable names, NodeStats.Table t) {
+    List<CompactParsedLog.NodeSummary> l = new ArrayList<>(t.size);
+    for (int i = 0; i < t.size; i++) {
+      CompactParsedLog.NodeSummary n = new CompactParsedLog.NodeSummary();
+      n.id = names.name(i);
+      n.tasks = t.tasks[i];
+      n.executorRunTimeMs = t.runTimeMs[i];
+      n.gcTimeMs = t.gcTimeMs[i];
+      n.shuffleFetchWaitMs = t.fetchWaitMs[i];
+      n.p50TaskDurationMs = t.durations[i].quantile(0.50);
+      n.p95TaskDurationMs = t.durations[i].quantile(0.95);
+      n.maxTaskDurationMs = t.durations[i].max();
+      l.add(n);
+    }
+    return l;
+  }
+
+  private void addBadNodes(ParseState.StageAgg a, String kind, NameTable names, List<NodeStats.Outlier> found) {
+    for (NodeStats.Outlier o : found) {
+      CompactParsedLog.BadNode b = new CompactParsedLog.BadNode();
+      b.kind = kind;
+      b.id = names.name(o.node());
+      b.stageId = a.stageId;
+      b.attemptId = a.attemptId;
+      b.tasks = o.tasks();
+      b.geoMeanTaskDurationMs = o.geoMeanMs();
+      b.peerGeoMeanTaskDurationMs = o.peerGeoMeanMs();
+      b.slowdown = o.geoMeanMs() / o.peerGeoMeanMs();
+      b.tStat = o.tStat();
+      out.badNodes.add(b);
+    }
+  }
+
   private void finalizeExecutorsAvg() {
     if (out.startTimeMs == null || out.endTimeMs == null || out.endTimeMs <= out.startTimeMs) return;
 
@@ -274,106 +617,91 @@ public class SparkEventLogParser {
     out.executors.avgExecutors = (double) area / (double) (end - start);
   }
 
-  private void finalizeStatus() {
-    if (out.endTimeMs != null && "UNKNOWN".equals(out.status)) out.status = "SUCCEEDED";
-  }
-
-  // ---------- helpers ----------
-
-  private static boolean keepConf(String k) {
-    for (String p : CONF_PREFIXES) if (k.startsWith(p)) return true;
-    return false;
-  }
-
-  private static String key(int stageId, int attemptId) { return stageId + ":" + attemptId; }
-
-  private static String textAt(JsonNode n, String f) {
-    JsonNode x = n.get(f);
-    return x != null && !x.isNull() ? x.asText() : null;
-  }
-
-  private static Long longAtOrNull(JsonNode n, String f) {
-    JsonNode x = n.get(f);
-    return x != null && x.isNumber() ? x.asLong() : null;
-  }
-
-  private static long longAt(JsonNode n, String f, long def) {
-    JsonNode x = n.get(f);
-    return x != null && x.isNumber() ? x.asLong() : def;
-  }
-
-  private static long longAt(JsonNode n, String obj, String f, long def) {
-    JsonNode o = n.get(obj);
-    if (o == null) return def;
-    JsonNode x = o.get(f);
-    return x != null && x.isNumber() ? x.asLong() : def;
+  /** Task-slot occupancy per interval: busy task time from the slot timeline over executor slots. */
+  private void finalizeSlots(ParseState st) {
+    if (out.startTimeMs == null || out.endTimeMs == null || out.endTimeMs <= out.startTimeMs) return;
+    if (st.slots.isEmpty()) return;
+
+    long start = out.startTimeMs, end = out.endTimeMs;
+    long w = st.slots.widthMs();
+    long perPoint = (end - start + MAX_OCCUPANCY_POINTS - 1) / MAX_OCCUPANCY_POINTS;
+    long interval = Math.max(1, (perPoint + w - 1) / w) * w;
+    int cores = (out.executors.executorCores != null && out.executors.executorCores > 0) ? out.executors.executorCores : 1;
+
+    CompactParsedLog.SlotOccupancy o = new CompactParsedLog.SlotOccupancy();
+    o.intervalMs = interval;
+    double capacityMs = 0, busyMs = 0, idleMs = 0;
+    for (long t = start; t < end; t += interval) {
+      long e = Math.min(end, t + interval);
+      double cap = (double) executorMs(t, e) * cores;
+      double busy = st.slots.busyMs(t, e);
+      capacityMs += cap;
+      busyMs += busy;
+      idleMs += Math.max(0, cap - busy);
+
+      CompactParsedLog.SlotInterval p = new CompactParsedLog.SlotInterval();
+      p.startMs = t;
+      p.runningTasks = busy / (e - t);
+      p.slots = cap / (e - t);
+      p.occupancy = cap > 0 ? busy / cap : 0.0;
+      o.series.add(p);
+    }
+    o.capacitySlotSeconds = capacityMs / 1000.0;
+    o.busySlotSeconds = busyMs / 1000.0;
+    o.idleSlotSeconds = idleMs / 1000.0;
+    out.slotOccupancy = o;
   }
 
-  private static int intAt(JsonNode n, String f) {
-    JsonNode x = n.get(f);
-    return x != null ? x.asInt() : 0;
+  /** Integral of the executor count over [from, to), in executor-ms. */
+  private long executorMs(long from, long to) {
+    Map.Entry<Long, Integer> f = execCountTimeline.floorEntry(from);
+    long area = 0, lastT = from;
+    int lastC = f != null ? f.getValue() : 0;
+    for (var ent : execCountTimeline.subMap(from, false, to, false).entrySet()) {
+      area += (ent.getKey() - lastT) * (long) lastC;
+      lastT = ent.getKey();
+      lastC = ent.getValue();
+    }
+    return area + (to - lastT) * (long) lastC;
   }
 
-  private static Integer intAtOrNull(JsonNode n, String f) {
-    JsonNode x = n.get(f);
-    return (x != null && x.isNumber()) ? x.asInt() : null;
+  private void finalizeStatus() {
+    if (out.endTimeMs != null && "UNKNOWN".equals(out.status)) out.status = "SUCCEEDED";
   }
 
   // ---------- reducers ----------
 
-  private static class StageAgg {
-    final int stageId, attemptId;
-    String name;
-
-    Long submissionTimeMs, completionTimeMs, durationMs;
-    long numTasks;
-
-    long executorRunTimeMs, gcTimeMs;
-    long shuffleReadBytes, shuffleWriteBytes;
-    long spillMemBytes, spillDiskBytes;
-
-    final Reservoir taskDurations = new Reservoir(15000);
-
-    StageAgg(int stageId, int attemptId) { this.stageId = stageId; this.attemptId = attemptId; }
-  }
-
-  private static class Reservoir {
-    private final long[] buf;
-    private int size = 0;
-    private long seen = 0;
-    private final Random rnd = new Random(1);
-
-    Reservoir(int cap) { buf = new long[cap]; }
-
-    void add(long v) {
-      seen++;
-      if (size < buf.length) { buf[size++] = v; return; }
-      long j = Math.abs(rnd.nextLong()) % seen;
-      if (j < buf.length) buf[(int) j] = v;
-    }
-
-    long[] values() { return Arrays.copyOf(buf, size); }
-  }
-
   private static class SkewStats {
     long max;
-    double p50, p95;
+    double p50, p95, p99, p999;
     double stragglerPct;
 
-    static SkewStats from(Reservoir r) {
-      long[] v = r.values();
+    static SkewStats from(DurationSketch d) {
       SkewStats s = new SkewStats();
-      if (v.length == 0) return s;
-
-      Arrays.sort(v);
-      s.max = v[v.length - 1];
-      s.p50 = v[(int) Math.floor(0.50 * (v.length - 1))];
-      s.p95 = v[(int) Math.floor(0.95 * (v.length - 1))];
+      if (d.count() == 0) return s;
+
+      s.max = d.max();
+      s.p50 = d.quantile(0.50);
+      s.p95 = d.quantile(0.95);
+      s.p99 = d.quantile(0.99);
+      s.p999 = d.quantile(0.999);
+      s.stragglerPct = (double) d.countAbove(s.p50 * 3.0) / (double) d.count();
+      return s;
+    }
 
-      double thr = s.p50 * 3.0;
-      long str = 0;
-      for (long x : v) if (x > thr) str++;
-      s.stragglerPct = (double) str / (double) v.length;
+    static SkewStats exact(DurationSpool spool, DurationSpool.Values v) throws IOException {
+      SkewStats s = new SkewStats();
+      long n = v.count();
+      if (n == 0) return s;
+
+      long[] q = new long[DurationSpool.QUANTILES.length + 1];
+      long stragglers = spool.summarize(v, q);
+      s.p50 = q[0];
+      s.p95 = q[1];
+      s.p99 = q[2];
+      s.p999 = q[3];
+      s.max = q[4];
+      s.stragglerPct = (double) stragglers / (double) n;
       return s;
     }
   }
@@ -1,6 +1,8 @@
 package com.yourorg.sparklog;
 
 public class UtilizationScorer {
+  // intervals with fewer running tasks than this share of slots count as mostly idle
+  private static final double LOW_OCCUPANCY = 0.25;
 
   public static UtilizationScore score(CompactParsedLog p) {
     UtilizationScore u = new UtilizationScore();
@@ -26,6 +28,10 @@ public class UtilizationScorer {
     double slotTimeAvailable = avgExecutors * cores * appMs;
 
     double util = slotTimeAvailable > 0 ? (execMs / slotTimeAvailable) : 0.0;
+
+    // prefer the occupancy timeline: it counts idle stretches the averages smooth over
+    CompactParsedLog.SlotOccupancy occ = p.slotOccupancy;
+    if (occ != null && occ.capacitySlotSeconds > 0) util = occ.busySlotSeconds / occ.capacitySlotSeconds;
     util = Math.min(1.0, util);
 
     u.parallelismUtil = util;
@@ -40,6 +46,13 @@ public class UtilizationScorer {
     u.evidence.put("slotTimeAvailableMs", slotTimeAvailable);
     u.evidence.put("appDurationMs", appMs);
     u.evidence.put("avgExecutors", avgExecutors);
+    if (occ != null) {
+      long low = occ.series.stream().filter(i -> i.slots > 0 && i.occupancy < LOW_OCCUPANCY).count();
+      u.evidence.put("busySlotSeconds", occ.busySlotSeconds);
+      u.evidence.put("idleSlotSeconds", occ.idleSlotSeconds);
+      u.evidence.put("capacitySlotSeconds", occ.capacitySlotSeconds);
+      u.evidence.put("lowOccupancyIntervalPct", occ.series.isEmpty() ? 0.0 : 100.0 * low / occ.series.size());
+    }
 
     return u;
   }
@@ -0,0 +1,76 @@
+package com.yourorg.sparklog;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import org.junit.jupiter.api.Test;
+
+/** {@link DriverLogTimestamps#decode} against {@code LocalDateTime.parse(...).atZone(zone)}. */
+class DriverLogTimestampsTest {
+  private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd/MM/yy HH:mm:ss");
+
+  @Test
+  void londonSpringForwardAndFallBack() {
+    ZoneId london = ZoneId.of("Europe/London");
+    // 31/03/24 01:00 -> 02:00 (gap) and 27/10/24 02:00 -> 01:00 (overlap)
+    assertSecondBySecond(london, LocalDateTime.of(2024, 3, 30, 22, 0), LocalDateTime.of(2024, 3, 31, 4, 0));
+    assertSecondBySecond(london, LocalDateTime.of(2024, 10, 26, 22, 0), LocalDateTime.of(2024, 10, 27, 4, 0));
+  }
+
+  @Test
+  void transitionsInOtherZones() {
+    // Lord Howe shifts by 30 minutes, so the gap and overlap end mid-hour
+    for (String id : new String[] {"America/New_York", "Australia/Lord_Howe"}) {
+      ZoneId zone = ZoneId.of(id);
+      ZoneOffsetTransition t = zone.getRules().nextTransition(Instant.parse("2023-01-01T00:00:00Z"));
+      for (int i = 0; i < 4; i++, t = zone.getRules().nextTransition(t.getInstant())) {
+        LocalDateTime at = t.getDateTimeBefore();
+        assertSecondBySecond(zone, at.minusHours(2), at.plusHours(2));
+      }
+    }
+  }
+
+  @Test
+  void adjustedAndInvalidTextMatchesFormatter() {
+    DriverLogTimestamps ts = new DriverLogTimestamps(ZoneId.of("Europe/London"));
+    String[] texts = {
+        "31/04/24 10:00:00", "29/02/23 10:00:00", "29/02/24 10:00:00", "30/02/24 10:00:00", "31/12/99 23:59:59",
+        "24/10/24 24:00:00", "01/01/24 23:60:00", "01/01/24 23:00:60", "00/01/24 10:00:00", "01/00/24 10:00:00",
+        "01/13/24 10:00:00", "1/01/24 10:00:00 ", "01/01/24T10:00:00", "01-01-24 10:00:00", "01/01/24 10:00",
+        "ab/01/24 10:00:00", "01/01/24 10:0x:00",
+    };
+    for (String s : texts) assertEquals(expected(s, ZoneId.of("Europe/London")), ts.decode(s, 0), s);
+  }
+
+  @Test
+  void decodesAtOffset() {
+    DriverLogTimestamps ts = new DriverLogTimestamps(ZoneId.of("UTC"));
+    assertEquals(Instant.parse("2024-03-31T01:30:00Z").toEpochMilli(), ts.decode("[x] 31/03/24 01:30:00 INFO", 4));
+    assertEquals(DriverLogTimestamps.NONE, ts.decode("[x] 31/03/24 01:30", 4));
+  }
+
+  /** Every second in [from, to), forwards and then backwards through one decoder, so cached hours are reused. */
+  private static void assertSecondBySecond(ZoneId zone, LocalDateTime from, LocalDateTime to) {
+    DriverLogTimestamps ts = new DriverLogTimestamps(zone);
+    for (LocalDateTime t = from; t.isBefore(to); t = t.plusSeconds(1)) {
+      String s = FMT.format(t);
+      assertEquals(expected(s, zone), ts.decode(s, 0), s + " " + zone);
+    }
+    for (LocalDateTime t = to.minusSeconds(1); !t.isBefore(from); t = t.minusSeconds(1)) {
+      String s = FMT.format(t);
+      assertEquals(expected(s, zone), ts.decode(s, 0), s + " " + zone);
+    }
+  }
+
+  private static long expected(String s, ZoneId zone) {
+    try {
+      return LocalDateTime.parse(s, FMT).atZone(zone).toInstant().toEpochMilli();
+    } catch (Exception e) {
+      return DriverLogTimestamps.NONE;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.yourorg.sparklog;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/** The scanner in {@link MatchingEngineLogParser#parseLine} against the regexes it replaced. */
+class MatchingEngineLogParserTest {
+  private static final ZoneId ZONE = ZoneOffset.UTC;
+
+  @Test
+  void edgeCasesMatchRegexes() {
+    String[] lines = {
+        "01/02/24 10:11:12 INFO Rule [R1] Match Candidates = 10, Matches = 4, Total Match % = 40.0%, MatchTime = 1.25s",
+        // date/time separators the formatter rejects although the prefix regex takes them
+        "01/02/24  10:11:12 INFO Rule [R1] Matches = 4",
+        "01/02/24\t10:11:12 INFO Rule [R1] Matches = 4",
+        "01/02/24 10:11:12\tRule [R1] Matches = 4",
+        "01/02/24 10:11:12Rule [R1] Matches = 4",
+        "31/02/24 10:11:12 Rule [R1] Matches = 4",
+        "01/13/24 10:11:12 Rule [R1] Matches = 4",
+        "01/02/24 24:00:00 Rule [R1] Matches = 4",
+        // backtracking from the longer alternative to "Matches", and last-wins
+        "Rule [R2] Matches from ageing breaks = Matches = 3",
+        "Rule [R2] Matches from ageing breaks =, Matches = 3",
+        "Rule [R2] Matches from ageing breaks = 7 Matches = 3 Matches = 5",
+        "Rule [R2] Matches from ageing breaks=7",
+        "Rule [R2] Matches=3 Match Candidates =\t9 Total Unmatched = 2",
+        "Rule [R2] Matches = Total Unmatched = 2",
+        "Rule [R2] Total Unmatched = 2Matches = 6",
+        // decimals
+        "Rule [R3] Total Match % = 1.2.3%",
+        "Rule [R3] MatchTime = 1..5s",
+        "Rule [R3] Total Match % = .5% MatchTime = 5.s",
+        "Rule [R3] Total Match % = 12.3456789012345678% MatchTime = 1234567890123456.7s",
+        "Rule [R3] Total Match % = 0.1000000000000000055511151231257827% MatchTime = 9007199254740993s",
+        "Rule [R3] Total Match % = 99.9 % Total Match % = 12.5%",
+        "Rule [R3] MatchTime = 3.0 MatchTime = 4.5s MatchTime = 6.5s",
+        "Rule [R3] Total Match %=%",
+        // the rule name: empty, repeated, unterminated
+        "Rule []",
+        "Rule [] Rule [R4] Matches = 1",
+        "Rule [R4] x Rule [R5] Matches = 1",
+        "Rule[R4]",
+        "Rule  \t[R4 with spaces] Matches = 1",
+        "Rule [R4",
+        "RuleRule [R4]",
+        "Rules [R4]",
+        "no rule here Matches = 3",
+        "",
+    };
+    for (String line : lines) assertSame(line);
+  }
+
+  @Test
+  void overflowingCountThrowsLikeRegex() {
+    String line = "Rule [R] Matches = 99999999999999999999";
+    assertThrows(NumberFormatException.class, () -> Regexes.parseLine(line));
+    assertThrows(NumberFormatException.class, () -> MatchingEngineLogParser.parseLine(line, new DriverLogTimestamps(ZONE)));
+  }
+
+  @Test
+  void fuzzedLinesMatchRegexes() {
+    String[] parts = {
+        "Rule", " ", "  ", "\t", "[", "]", "R1", "Rule [", "Rule [R] ", "=", " = ", "%", "s", ".", "1", "23", "0.5",
+        "1234567890123456", "Match Candidates", "Matches from ageing breaks", "Matches", "Total Unmatched",
+        "Total Match %", "MatchTime", "Match", "Total", "M", "T", ",", "x",
+    };
+    Random rnd = new Random(42);
+    DriverLogTimestamps ts = new DriverLogTimestamps(ZONE);
+    for (int n = 0; n < 200_000; n++) {
+      StringBuilder sb = new StringBuilder();
+      if (rnd.nextBoolean()) sb.append(String.format("%02d/%02d/%02d%s%02d:%02d:%02d ", rnd.nextInt(33), rnd.nextInt(14),
+          rnd.nextInt(100), rnd.nextInt(8) == 0 ? "  " : " ", rnd.nextInt(25), rnd.nextInt(60), rnd.nextInt(60)));
+      for (int k = rnd.nextInt(12); k >= 0; k--) sb.append(parts[rnd.nextInt(parts.length)]);
+      assertSame(sb.toString(), ts);
+    }
+  }
+
+  private static void assertSame(String line) {
+    assertSame(line, new DriverLogTimestamps(ZONE));
+  }
+
+  private static void assertSame(String line, DriverLogTimestamps ts) {
+    assertEquals(outcome(() -> Regexes.parseLine(line)), outcome(() -> MatchingEngineLogParser.parseLine(line, ts)), line);
+  }
+
+  private static String outcome(java.util.function.Supplier<MatchRuleMetric> parse) {
+    MatchRuleMetric r;
+    try {
+      r = parse.get();
+    } catch (RuntimeException e) {
+      return e.getClass().getName();
+    }
+    if (r == null) return "null";
+    return r.rule + " ts=" + r.timestampMs + " cand=" + r.matchCandidates + " matches=" + r.matches + " ageing="
+        + r.matchesFromAgeingBreaks + " unmatched=" + r.totalUnmatched + " pct=" + bits(r.totalMatchPct)
+        + " time=" + bits(r.matchTimeSec);
+  }
+
+  private static String bits(Double d) {
+    return d == null ? "null" : Long.toHexString(Double.doubleToRawLongBits(d));
+  }
+
+  /** The regex implementation the scanner replaced. */
+  private static final class Regexes {
+    static final Pattern RULE_PATTERN = Pattern.compile("Rule\\s*\\[(?<rule>[^\\]]+)]");
+    static final Pattern LONG_FIELD =
+        Pattern.compile("(?<key>Match Candidates|Matches from ageing breaks|Matches|Total Unmatched)\\s*=\\s*(?<val>\\d+)");
+    static final Pattern PCT_FIELD = Pattern.compile("Total Match %\\s*=\\s*(?<val>[0-9.]+)%");
+    static final Pattern TIME_FIELD = Pattern.compile("MatchTime\\s*=\\s*(?<val>[0-9.]+)s");
+    static final Pattern TS_PREFIX = Pattern.compile("^(?<dt>\\d{2}/\\d{2}/\\d{2}\\s+\\d{2}:\\d{2}:\\d{2})\\s+");
+    static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("dd/MM/yy HH:mm:ss");
+
+    static MatchRuleMetric parseLine(String line) {
+      Matcher ruleMatcher = RULE_PATTERN.matcher(line);
+      if (!ruleMatcher.find()) return null;
+
+      MatchRuleMetric r = new MatchRuleMetric();
+      r.rule = ruleMatcher.group("rule");
+      r.timestampMs = parseTimestampMs(line);
+
+      Matcher m = LONG_FIELD.matcher(line);
+      while (m.find()) {
+        long v = Long.parseLong(m.group("val"));
+        switch (m.group("key")) {
+          case "Match Candidates" -> r.matchCandidates = v;
+          case "Matches" -> r.matches = v;
+          case "Matches from ageing breaks" -> r.matchesFromAgeingBreaks = v;
+          case "Total Unmatched" -> r.totalUnmatched = v;
+        }
+      }
+      m = PCT_FIELD.matcher(line);
+      if (m.find()) r.totalMatchPct = Double.parseDouble(m.group("val"));
+      m = TIME_FIELD.matcher(line);
+      if (m.find()) r.matchTimeSec = Double.parseDouble(m.group("val"));
+      return r;
+    }
+
+    static Long parseTimestampMs(String line) {
+      Matcher m = TS_PREFIX.matcher(line);
+      if (!m.find()) return null;
+      try {
+        return LocalDateTime.parse(m.group("dt"), TS_FMT).atZone(ZONE).toInstant().toEpochMilli();
+      } catch (Exception ignored) {
+        return null;
+      }
+    }
+  }
+}
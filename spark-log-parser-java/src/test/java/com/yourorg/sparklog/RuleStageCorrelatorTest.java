@@ -0,0 +1,140 @@
+package com.yourorg.sparklog;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** {@link RuleStageCorrelator#correlate} against the nested loop it replaced. */
+class RuleStageCorrelatorTest {
+  private static final ObjectMapper OM = new ObjectMapper();
+
+  @Test
+  void tiesAndBoundariesMatchNestedLoop() throws Exception {
+    CompactParsedLog run = new CompactParsedLog();
+    stage(run, 1, 1000L, 2000L);
+    stage(run, 2, 1000L, 2000L);   // same interval as stage 1
+    stage(run, 3, 1000L, 1500L);   // same submission, shorter
+    stage(run, 4, 1500L, 1500L);   // zero length
+    stage(run, 5, 1800L, 1200L);   // inverted
+    stage(run, 6, null, 1900L);
+    stage(run, 7, 1100L, null);
+    stage(run, 8, 2000L, 3000L);   // starts exactly where stages 1 and 2 complete
+    stage(run, 9, 500L, 1000L);    // completes exactly where stage 1 is submitted
+    stage(run, 10, 1000L, 2000L);  // third copy, later in the list
+
+    rule(run, "endsAtSubmission", 1000L, 0.5);    // [500, 1000)
+    rule(run, "startsAtCompletion", 2500L, 0.5);  // [2000, 2500)
+    rule(run, "exactStage", 2000L, 1.0);          // [1000, 2000)
+    rule(run, "insideZeroLength", 1501L, 0.002);  // [1499, 1501)
+    rule(run, "tiny", 1500L, 0.0);                // [1499, 1500), at least 1 ms
+    rule(run, "covering", 5000L, 5.0);
+    rule(run, "beforeAll", 100L, 0.05);
+    rule(run, "afterAll", 9000L, 1.0);
+    rule(run, "sameLength", 2600L, 0.5);          // ties in the outer sort
+    rule(run, "noTime", null, 1.0);
+    rule(run, "noDuration", 1500L, null);
+
+    assertSame(run);
+  }
+
+  @Test
+  void wideTimeSpanFallsBackToBoxedSort() throws Exception {
+    CompactParsedLog run = new CompactParsedLog();
+    stage(run, 1, 0L, 10L);
+    stage(run, 2, 1L << 61, (1L << 61) + 10);
+    stage(run, 3, 5L, 20L);
+    stage(run, 4, 0L, 30L);
+    rule(run, "low", 12L, 0.01);
+    rule(run, "high", (1L << 61) + 5, 0.01);
+    assertSame(run);
+  }
+
+  @Test
+  void randomRunsMatchNestedLoop() throws Exception {
+    Random rnd = new Random(7);
+    for (int n = 0; n < 500; n++) {
+      CompactParsedLog run = new CompactParsedLog();
+      int stages = rnd.nextInt(60);
+      for (int i = 0; i < stages; i++) {
+        // a small grid, so equal and touching times are common
+        Long s = rnd.nextInt(20) == 0 ? null : 100L * rnd.nextInt(30);
+        Long e = rnd.nextInt(20) == 0 ? null : 100L * rnd.nextInt(30) + (rnd.nextBoolean() ? 0 : rnd.nextInt(100));
+        stage(run, i, s, e);
+      }
+      for (int i = rnd.nextInt(20); i >= 0; i--) {
+        rule(run, "r" + i, 100L * rnd.nextInt(32), rnd.nextInt(10) == 0 ? 0.0 : rnd.nextInt(40) / 10.0);
+      }
+      assertSame(run);
+    }
+  }
+
+  private static void assertSame(CompactParsedLog run) throws Exception {
+    assertEquals(OM.writeValueAsString(nestedLoop(run)), OM.writeValueAsString(RuleStageCorrelator.correlate(run)));
+  }
+
+  private static void stage(CompactParsedLog run, int id, Long submission, Long completion) {
+    CompactParsedLog.StageSummary s = new CompactParsedLog.StageSummary();
+    s.stageId = id;
+    s.name = "stage " + id;
+    s.submissionTimeMs = submission;
+    s.completionTimeMs = completion;
+    run.stages.add(s);
+  }
+
+  private static void rule(CompactParsedLog run, String name, Long endMs, Double matchTimeSec) {
+    MatchRuleMetric r = new MatchRuleMetric();
+    r.rule = name;
+    r.timestampMs = endMs;
+    r.matchTimeSec = matchTimeSec;
+    run.matchRules.add(r);
+  }
+
+  /** The implementation before stages were indexed. */
+  private static List<RuleStageCorrelation> nestedLoop(CompactParsedLog run) {
+    if (run.matchRules == null || run.matchRules.isEmpty()) return List.of();
+    if (run.stages == null || run.stages.isEmpty()) return List.of();
+
+    List<RuleStageCorrelation> out = new ArrayList<>();
+    for (MatchRuleMetric r : run.matchRules) {
+      if (r.timestampMs == null || r.matchTimeSec == null) continue;
+
+      long end = r.timestampMs;
+      long start = end - Math.max(1L, (long) (r.matchTimeSec * 1000.0));
+
+      RuleStageCorrelation c = new RuleStageCorrelation();
+      c.rule = r.rule;
+      c.ruleEndTimeMs = end;
+      c.ruleStartTimeMs = start;
+      c.ruleMatchTimeSec = r.matchTimeSec;
+
+      long ruleDur = Math.max(1L, end - start);
+      for (CompactParsedLog.StageSummary s : run.stages) {
+        if (s.submissionTimeMs == null || s.completionTimeMs == null) continue;
+        long ss = s.submissionTimeMs;
+        long se = s.completionTimeMs;
+        if (se <= ss) continue;
+
+        long overlap = Math.max(0L, Math.min(end, se) - Math.max(start, ss));
+        if (overlap <= 0) continue;
+
+        RuleStageCorrelation.Overlap o = new RuleStageCorrelation.Overlap();
+        o.stageId = s.stageId;
+        o.attemptId = s.attemptId;
+        o.stageName = s.name;
+        o.stageStartMs = ss;
+        o.stageEndMs = se;
+        o.overlapMs = overlap;
+        o.overlapPctOfRule = (double) overlap / (double) ruleDur;
+        c.overlaps.add(o);
+      }
+      c.overlaps.sort((a, b) -> Long.compare(b.overlapMs, a.overlapMs));
+      out.add(c);
+    }
+    out.sort((a, b) -> Long.compare(b.ruleEndTimeMs - b.ruleStartTimeMs, a.ruleEndTimeMs - a.ruleStartTimeMs));
+    return out;
+  }
+}
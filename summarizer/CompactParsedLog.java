@@ -8,6 +8,8 @@ public class CompactParsedLog {
   public long appStartMs;
   public long appEndMs;
 
+  public Map<String, String> sparkConf = new HashMap<>();
+
   public java.util.List<Stage> stages = new ArrayList<>();
   public java.util.List<MatchRuleMetric> matchRules = new ArrayList<>();
 
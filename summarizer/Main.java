@@ -4,15 +4,40 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Main {
 
   /**
    * summarize <eventLog> <outDir> [driverLog] [tz]
    * diff <eventA> <eventB> <outDir> [driverA] [driverB] [tz]
+   * diff --store <dir> --baseline-tag <tag> <eventB> <outDir> [driverB] [tz]
+   * runs <storeDir> [--app <name>] [--tag <tag>] [--from <time>] [--to <time>]
+   * trend <outDir> <eventLog>... | trend --store <dir> --app <name> [--tag ...] [--from ...] [--to ...] <outDir>
    */
-  public static void main(String[] args) throws Exception {
+  public static void main(String[] argv) throws Exception {
+    // options may appear anywhere; everything else is positional
+    String store = null, baselineTag = null, app = null;
+    long from = Long.MIN_VALUE, to = Long.MAX_VALUE;
+    int window = TrendAnalyzer.DEFAULT_WINDOW;
+    List<String> tags = new ArrayList<>();
+    List<String> rest = new ArrayList<>();
+    for (int i = 0; i < argv.length; i++) {
+      String a = argv[i];
+      boolean hasValue = i + 1 < argv.length;
+      if (a.equals("--store") && hasValue) store = argv[++i];
+      else if (a.equals("--tag") && hasValue) tags.add(argv[++i]);
+      else if (a.equals("--baseline-tag") && hasValue) baselineTag = argv[++i];
+      else if (a.equals("--app") && hasValue) app = argv[++i];
+      else if (a.equals("--from") && hasValue) from = parseTime(argv[++i]);
+      else if (a.equals("--to") && hasValue) to = parseTime(argv[++i]);
+      else if (a.equals("--window") && hasValue) window = Integer.parseInt(argv[++i]);
+      else rest.add(a);
+    }
+    String[] args = rest.toArray(new String[0]);
     if (args.length < 1) usageAndExit();
 
     String mode = args[0].toLowerCase();
@@ -35,6 +60,36 @@ public class Main {
       om.writerWithDefaultPrettyPrinter().writeValue(new File(outDir, "parsed.json"), parsed);
       om.writerWithDefaultPrettyPrinter().writeValue(new File(outDir, "summary.json"), summary);
       System.out.println("Wrote parsed.json + summary.json to " + outDir.getAbsolutePath());
+      if (store != null) storeRun(store, summary, parsed, tags);
+      return;
+    }
+
+    if ("diff".equals(mode) && baselineTag != null) {
+      if (store == null || args.length < 3) usageAndExit();
+
+      Path b = Path.of(args[1]);
+      File outDir = new File(args[2]);
+      outDir.mkdirs();
+
+      ZoneId zone = ZoneId.of(args.length >= 5 ? args[4] : "Asia/Kolkata");
+
+      CompactParsedLog pb = new SparkEventLogParser().parse(b);
+      if (args.length >= 4) pb.matchRules.addAll(MatchingEngineLogParser.parse(Path.of(args[3]), zone));
+      RunSummary sb = RunSummarizer.summarize(pb);
+
+      // baseline: the newest run of the same app carrying the tag
+      RunStore runs = RunStore.open(Path.of(store));
+      String appName = pb.sparkConf.get("spark.app.name");
+      RunStore.Entry base = runs.latest(appName, baselineTag);
+      if (base == null) {
+        System.err.println("No run tagged '" + baselineTag + "'" + (appName != null ? " for app '" + appName + "'" : "") + " in " + store);
+        System.exit(1);
+      }
+      RunSummary sa = runs.load(base).summary;
+      System.out.println("Baseline: " + base.appId + " (started " + Instant.ofEpochMilli(base.startMs) + ")");
+
+      writeDiff(om, outDir, sa, sb);
+      runs.append(sb, pb, tags);
       return;
     }
 
@@ -57,31 +112,109 @@ public class Main {
       RunSummary sa = RunSummarizer.summarize(pa);
       RunSummary sb = RunSummarizer.summarize(pb);
 
-      RunDiff diff = RunDiffer.diff(sa, sb);
-      String prompt = PromptBuilder.buildPrompt(diff);
+      writeDiff(om, outDir, sa, sb);
+      if (store != null) storeRun(store, sb, pb, tags);
+      return;
+    }
 
-      om.writerWithDefaultPrettyPrinter().writeValue(new File(outDir, "baseline_summary.json"), sa);
-      om.writerWithDefaultPrettyPrinter().writeValue(new File(outDir, "candidate_summary.json"), sb);
-      om.writerWithDefaultPrettyPrinter().writeValue(new File(outDir, "diff.json"), diff);
-      java.nio.file.Files.writeString(new File(outDir, "llm_prompt.txt").toPath(), prompt);
+    if ("runs".equals(mode)) {
+      if (args.length < 2) usageAndExit();
+      RunStore runs = RunStore.open(Path.of(args[1]));
+      for (RunStore.Entry e : runs.find(app, tags.isEmpty() ? null : tags.get(0), from, to)) {
+        System.out.println(Instant.ofEpochMilli(e.startMs) + "  " + e.appId + "  " + (e.appName != null ? e.appName : "-") + "  " + e.tags);
+      }
+      return;
+    }
+
+    if ("trend".equals(mode)) {
+      if (args.length < 2 || (store == null && args.length < 3)) usageAndExit();
+      if (store != null && app == null) {
+        System.err.println("trend --store needs --app: a trend is over runs of one job");
+        usageAndExit();
+      }
+      File outDir = new File(args[1]);
+      outDir.mkdirs();
 
-      System.out.println("Wrote baseline/candidate summaries, diff.json, llm_prompt.txt to " + outDir.getAbsolutePath());
+      TrendAnalyzer trend = new TrendAnalyzer(window);
+      if (store != null) {
+        // entries come back in start order; one stored run is loaded at a time
+        RunStore runs = RunStore.open(Path.of(store));
+        for (RunStore.Entry e : runs.find(app, tags.isEmpty() ? null : tags.get(0), from, to)) {
+          RunStore.StoredRun r = runs.load(e);
+          trend.add(r.summary, e.startMs, r.parsed != null ? r.parsed.matchRules : null);
+        }
+      } else {
+        // only the summaries are kept while the logs are put in start order
+        record Run(long startMs, RunSummary summary, List<MatchRuleMetric> matchRules) {}
+        List<Run> runs = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+          CompactParsedLog p = new SparkEventLogParser().parse(Path.of(args[i]));
+          runs.add(new Run(p.appStartMs, RunSummarizer.summarize(p), p.matchRules));
+        }
+        runs.sort(java.util.Comparator.comparingLong(Run::startMs));
+        for (Run r : runs) trend.add(r.summary(), r.startMs(), r.matchRules());
+      }
+
+      TrendReport report = trend.finish();
+      File trendFile = new File(outDir, "trend.json");
+      om.writerWithDefaultPrettyPrinter().writeValue(trendFile, report);
+      System.out.println("Runs=" + report.runs + " changePoints=" + report.changePoints.size());
+      for (TrendReport.ChangePoint c : report.changePoints) {
+        System.out.printf("  %-40s %-4s at run #%d %s (%s): median %.3f -> %.3f%n",
+            c.metric, c.direction, c.runIndex, c.runId, Instant.ofEpochMilli(c.startMs), c.medianBefore, c.medianAfter);
+      }
+      System.out.println("Wrote " + trendFile.getAbsolutePath());
       return;
     }
 
     usageAndExit();
   }
 
+  private static void writeDiff(ObjectMapper om, File outDir, RunSummary sa, RunSummary sb) throws Exception {
+    RunDiff diff = RunDiffer.diff(sa, sb);
+    String prompt = PromptBuilder.buildPrompt(diff);
+
+    om.writerWithDefaultPrettyPrinter().writeValue(new File(outDir, "baseline_summary.json"), sa);
+    om.writerWithDefaultPrettyPrinter().writeValue(new File(outDir, "candidate_summary.json"), sb);
+    om.writerWithDefaultPrettyPrinter().writeValue(new File(outDir, "diff.json"), diff);
+    java.nio.file.Files.writeString(new File(outDir, "llm_prompt.txt").toPath(), prompt);
+
+    System.out.println("Wrote baseline/candidate summaries, diff.json, llm_prompt.txt to " + outDir.getAbsolutePath());
+  }
+
+  private static void storeRun(String store, RunSummary summary, CompactParsedLog parsed, List<String> tags) throws Exception {
+    RunStore.open(Path.of(store)).append(summary, parsed, tags);
+    System.out.println("Stored run " + parsed.appId + (tags.isEmpty() ? "" : " " + tags) + " in " + store);
+  }
+
+  /** Epoch millis or an ISO-8601 instant (2024-05-01T00:00:00Z). */
+  private static long parseTime(String s) {
+    return s.chars().allMatch(Character::isDigit) ? Long.parseLong(s) : Instant.parse(s).toEpochMilli();
+  }
+
   private static void usageAndExit() {
     System.err.println("""
       Usage:
         summarize <eventLog> <outDir> [driverLog] [tz]
         diff <eventA> <eventB> <outDir> [driverA] [driverB] [tz]
+        diff --store <dir> --baseline-tag <tag> <eventB> <outDir> [driverB] [tz]
+        runs <storeDir> [--app <name>] [--tag <tag>] [--from <time>] [--to <time>]
+        trend <outDir> <eventLog>...
+        trend --store <dir> --app <name> [--tag <tag>] [--from <time>] [--to <time>] <outDir>
+
+      Options:
+        --store <dir>   also append the (candidate) run to this run store
+        --tag <tag>     tag the stored run (repeatable), e.g. baseline, release-42
+        --window <n>    trend: rolling window for median/MAD (default 20)
 
       Notes:
         - Spark event logs are JSON lines (optionally .gz)
         - driverLog is your custom MatchingEngine log file (optional)
         - tz default: Asia/Kolkata
+        - diff with --baseline-tag takes the newest stored run of the same spark.app.name with that tag
+        - times are epoch millis or ISO-8601 instants
+        - trend --store needs --app (the spark.app.name); runs of other apps are not mixed into the series
+        - trend over event logs has no driver logs, so per-rule series need --store runs
     """);
     System.exit(1);
   }
@@ -0,0 +1,307 @@
+package com.yourorg.sparklog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Local history of summarized runs, so a diff can pull its baseline instead of re-parsing it.
+ *
+ * Two append-only files in the store directory:
+ *   runs.log  one frame per run: length, CRC32, JSON of {@link StoredRun} (summary + parsed log)
+ *   runs.idx  one small entry per run: frame offset/length, appId, app name, start time, tags
+ *
+ * Opening reads only runs.idx and builds in-memory indexes (appId, app name, tag, start time),
+ * so lookups never touch runs.log; {@link #load} then reads the one frame it needs. A crash
+ * between the two appends is repaired on open: frames past the last index entry are re-indexed
+ * and a torn trailing frame or entry is truncated.
+ */
+public class RunStore {
+
+  private static final String LOG = "runs.log";
+  private static final String IDX = "runs.idx";
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** What one frame of runs.log holds. */
+  public static class StoredRun {
+    public String appId;
+    public String appName;
+    public long startMs;
+    public long storedAtMs;
+    public List<String> tags = new ArrayList<>();
+    public RunSummary summary;
+    public CompactParsedLog parsed;
+  }
+
+  /** Index entry for one stored run. */
+  public static class Entry {
+    public long offset;
+    public int length;
+    public String appId;
+    public String appName;
+    public long startMs;
+    public long storedAtMs;
+    public List<String> tags = new ArrayList<>();
+  }
+
+  // newest last: start time, then insertion order
+  private static final Comparator<Entry> BY_START = Comparator.comparingLong((Entry e) -> e.startMs).thenComparingLong(e -> e.offset);
+
+  private final Path dir;
+  private final List<Entry> entries = new ArrayList<>();
+  private final TreeMap<Long, List<Entry>> byStart = new TreeMap<>();
+  private final Map<String, List<Entry>> byAppId = new HashMap<>();
+  private final Map<String, List<Entry>> byAppName = new HashMap<>();
+  private final Map<String, List<Entry>> byTag = new HashMap<>();
+  private long idxEnd; // bytes of runs.idx already loaded
+
+  private RunStore(Path dir) {
+    this.dir = dir;
+  }
+
+  public static RunStore open(Path dir) throws IOException {
+    Files.createDirectories(dir);
+    RunStore s = new RunStore(dir);
+    try (FileChannel log = FileChannel.open(dir.resolve(LOG), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+         FileChannel idx = FileChannel.open(dir.resolve(IDX), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+         FileLock lock = log.lock()) {
+      s.readIndex(idx, log.size());
+      s.recover(log, idx);
+    }
+    return s;
+  }
+
+  /** Appends a run; {@code parsed} supplies the indexed fields (appId, spark.app.name, start time). */
+  public Entry append(RunSummary summary, CompactParsedLog parsed, Collection<String> tags) throws IOException {
+    StoredRun r = new StoredRun();
+    r.appId = parsed.appId;
+    r.appName = parsed.sparkConf.get("spark.app.name");
+    r.startMs = parsed.appStartMs;
+    r.storedAtMs = System.currentTimeMillis();
+    r.tags.addAll(new TreeSet<>(tags));
+    r.summary = summary;
+    r.parsed = parsed;
+    byte[] json = MAPPER.writeValueAsBytes(r);
+
+    try (FileChannel log = FileChannel.open(dir.resolve(LOG), StandardOpenOption.READ, StandardOpenOption.WRITE);
+         FileChannel idx = FileChannel.open(dir.resolve(IDX), StandardOpenOption.READ, StandardOpenOption.WRITE);
+         FileLock lock = log.lock()) {
+      readIndex(idx, log.size()); // pick up runs appended by another process since open
+      recover(log, idx);
+
+      Entry e = entryOf(r, log.size(), json.length);
+      ByteBuffer frame = ByteBuffer.allocate(8 + json.length);
+      frame.putInt(json.length).putInt(crc(json)).put(json).flip();
+      while (frame.hasRemaining()) log.write(frame, e.offset + frame.position());
+      log.force(false);
+      writeEntry(idx, e);
+      add(e);
+      return e;
+    }
+  }
+
+  public StoredRun load(Entry e) throws IOException {
+    byte[] b = new byte[e.length];
+    try (FileChannel log = FileChannel.open(dir.resolve(LOG), StandardOpenOption.READ)) {
+      ByteBuffer bb = ByteBuffer.wrap(b);
+      while (bb.hasRemaining()) {
+        if (log.read(bb, e.offset + 8 + bb.position()) < 0) throw new EOFException("Truncated run at " + e.offset);
+      }
+    }
+    return MAPPER.readValue(b, StoredRun.class);
+  }
+
+  // ---------- queries ----------
+
+  public List<Entry> all() { return Collections.unmodifiableList(entries); }
+
+  public List<Entry> byAppId(String appId) { return byAppId.getOrDefault(appId, List.of()); }
+
+  /**
+   * Runs whose start time is in [fromMs, toMs], oldest first, optionally restricted to an app
+   * name and a tag (null = any).
+   */
+  public List<Entry> find(String appName, String tag, long fromMs, long toMs) {
+    List<Entry> out = new ArrayList<>();
+    if (fromMs > toMs) return out;
+    List<Entry> narrow = tag != null ? byTag.get(tag) : appName != null ? byAppName.get(appName) : null;
+    if ((tag != null || appName != null) && narrow == null) return out;
+
+    if (narrow != null) {
+      // per-key lists are kept sorted by start: binary search the range
+      int i = lowerBound(narrow, fromMs);
+      for (; i < narrow.size() && narrow.get(i).startMs <= toMs; i++) {
+        Entry e = narrow.get(i);
+        if (matches(e, appName, tag)) out.add(e);
+      }
+      return out;
+    }
+    for (List<Entry> l : byStart.subMap(fromMs, true, toMs, true).values()) out.addAll(l);
+    return out;
+  }
+
+  /** Most recent run (by start time) with {@code tag}, optionally of one app; null if none. */
+  public Entry latest(String appName, String tag) {
+    List<Entry> l = tag != null ? byTag.get(tag) : appName != null ? byAppName.get(appName) : entries.isEmpty() ? null : sortedAll();
+    if (l == null) return null;
+    for (int i = l.size() - 1; i >= 0; i--) {
+      if (matches(l.get(i), appName, tag)) return l.get(i);
+    }
+    return null;
+  }
+
+  private List<Entry> sortedAll() {
+    List<Entry> l = new ArrayList<>();
+    for (List<Entry> v : byStart.values()) l.addAll(v);
+    return l;
+  }
+
+  private static boolean matches(Entry e, String appName, String tag) {
+    return (appName == null || appName.equals(e.appName)) && (tag == null || e.tags.contains(tag));
+  }
+
+  private static int lowerBound(List<Entry> l, long fromMs) {
+    int lo = 0, hi = l.size();
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (l.get(mid).startMs < fromMs) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo;
+  }
+
+  // ---------- index maintenance ----------
+
+  private void add(Entry e) {
+    entries.add(e);
+    byStart.computeIfAbsent(e.startMs, k -> new ArrayList<>()).add(e);
+    insertSorted(byAppId.computeIfAbsent(e.appId, k -> new ArrayList<>()), e);
+    if (e.appName != null) insertSorted(byAppName.computeIfAbsent(e.appName, k -> new ArrayList<>()), e);
+    for (String t : e.tags) insertSorted(byTag.computeIfAbsent(t, k -> new ArrayList<>()), e);
+  }
+
+  private static void insertSorted(List<Entry> l, Entry e) {
+    int i = l.size();
+    while (i > 0 && BY_START.compare(l.get(i - 1), e) > 0) i--; // runs usually arrive in start order
+    l.add(i, e);
+  }
+
+  private static Entry entryOf(StoredRun r, long offset, int length) {
+    Entry e = new Entry();
+    e.offset = offset;
+    e.length = length;
+    e.appId = r.appId;
+    e.appName = r.appName;
+    e.startMs = r.startMs;
+    e.storedAtMs = r.storedAtMs;
+    e.tags.addAll(r.tags);
+    return e;
+  }
+
+  /**
+   * Loads runs.idx entries past the ones already known (another process may have appended),
+   * dropping entries that point past runs.log and a torn last entry.
+   */
+  private void readIndex(FileChannel idx, long logSize) throws IOException {
+    byte[] b = new byte[(int) (idx.size() - idxEnd)];
+    ByteBuffer bb = ByteBuffer.wrap(b);
+    while (bb.hasRemaining()) if (idx.read(bb, idxEnd + bb.position()) < 0) break;
+
+    ByteArrayInputStream bytes = new ByteArrayInputStream(b);
+    DataInputStream in = new DataInputStream(bytes);
+    long good = idxEnd;
+    try {
+      while (bytes.available() > 0) {
+        Entry e = new Entry();
+        e.offset = in.readLong();
+        e.length = in.readInt();
+        e.startMs = in.readLong();
+        e.storedAtMs = in.readLong();
+        e.appId = readString(in);
+        e.appName = readString(in);
+        for (int n = in.readInt(); n > 0; n--) e.tags.add(readString(in));
+        if (end(e) > logSize) break;
+        add(e);
+        good = idxEnd + b.length - bytes.available();
+      }
+    } catch (EOFException ignored) {
+      // torn last entry
+    }
+    idxEnd = good;
+    if (idx.size() > idxEnd) idx.truncate(idxEnd);
+  }
+
+  /** Indexes complete frames past the last index entry and cuts off a torn one. */
+  private void recover(FileChannel log, FileChannel idx) throws IOException {
+    long pos = 0;
+    for (Entry e : entries) pos = Math.max(pos, end(e));
+    long size = log.size();
+    ByteBuffer head = ByteBuffer.allocate(8);
+    while (pos + 8 <= size) {
+      head.clear();
+      log.read(head, pos);
+      int len = head.getInt(0);
+      int crc = head.getInt(4);
+      if (len < 0 || pos + 8 + len > size) break;
+      byte[] b = new byte[len];
+      ByteBuffer bb = ByteBuffer.wrap(b);
+      while (bb.hasRemaining()) log.read(bb, pos + 8 + bb.position());
+      if (crc(b) != crc) break;
+      Entry e = entryOf(MAPPER.readValue(b, StoredRun.class), pos, len);
+      writeEntry(idx, e);
+      add(e);
+      pos = end(e);
+    }
+    if (pos < size) log.truncate(pos);
+  }
+
+  private static long end(Entry e) { return e.offset + 8 + e.length; }
+
+  private void writeEntry(FileChannel idx, Entry e) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeLong(e.offset);
+    out.writeInt(e.length);
+    out.writeLong(e.startMs);
+    out.writeLong(e.storedAtMs);
+    writeString(out, e.appId);
+    writeString(out, e.appName);
+    out.writeInt(e.tags.size());
+    for (String t : e.tags) writeString(out, t);
+    ByteBuffer bb = ByteBuffer.wrap(bytes.toByteArray());
+    while (bb.hasRemaining()) idx.write(bb, idxEnd + bb.position());
+    idx.force(false);
+    idxEnd += bytes.size();
+  }
+
+  private static void writeString(DataOutput out, String s) throws IOException {
+    if (s == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    int n = in.readInt();
+    if (n < 0) return null;
+    byte[] b = new byte[n];
+    in.readFully(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  private static int crc(byte[] b) {
+    CRC32 c = new CRC32();
+    c.update(b);
+    return (int) c.getValue();
+  }
+}
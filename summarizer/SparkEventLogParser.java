@@ -35,6 +35,11 @@ public class SparkEventLogParser {
           if (n.has("Timestamp")) log.appStartMs = n.get("Timestamp").asLong();
         }
 
+        if (ev.equals("SparkListenerEnvironmentUpdate") && n.has("Spark Properties")) {
+          JsonNode props = n.get("Spark Properties");
+          props.fieldNames().forEachRemaining(k -> log.sparkConf.put(k, props.get(k).asText()));
+        }
+
         if (ev.equals("SparkListenerApplicationEnd")) {
           if (n.has("Timestamp")) log.appEndMs = n.get("Timestamp").asLong();
         }
@@ -0,0 +1,201 @@
+package com.yourorg.sparklog;
+
+import java.util.*;
+
+/**
+ * Trend and change-point detection over a series of runs of one job, fed one
+ * {@link RunSummary} at a time in start-time order; only small per-metric state is kept.
+ *
+ * Each metric keeps a rolling window of recent values. A new value is scored against the
+ * window's median and MAD (z = (x - median) / (1.4826 * MAD), clipped to +/-{@link #Z_CLIP})
+ * and fed to a two-sided CUSUM. The clip is what stops a single noisy run from raising an
+ * alarm: it takes a few runs in a row at a new level to push the sum over {@link #H}. On an
+ * alarm the change is attributed to the run where the sum last left zero, and the window
+ * restarts from the values since then. Shifts under {@link #MIN_SHIFT_PCT} of the median are
+ * not reported.
+ */
+public class TrendAnalyzer {
+
+  public static final int DEFAULT_WINDOW = 20;
+
+  static final int WARMUP = 8;       // values in the window before scoring starts
+  static final double K = 1.0;       // CUSUM slack, in robust standard deviations
+  static final double H = 5.0;       // CUSUM alarm threshold
+  static final double Z_CLIP = 3.0;
+  static final double MIN_SHIFT_PCT = 10.0; // smaller level changes are treated as noise
+
+  private final int window;
+  private final Map<String, Series> series = new LinkedHashMap<>();
+  private final List<TrendReport.ChangePoint> changePoints = new ArrayList<>();
+  private int runIndex = 0;
+
+  public TrendAnalyzer(int window) {
+    this.window = Math.max(WARMUP, window);
+  }
+
+  /**
+   * Adds the next run; runs must arrive ordered by start time.
+   *
+   * @param matchRules every rule line of the run's driver log, not the summary's top rules: a
+   *                   rule that got faster would drop out of the top list and its own series
+   */
+  public void add(RunSummary s, long startMs, List<MatchRuleMetric> matchRules) {
+    observe("durationMs", s.runId, startMs, s.durationMs);
+    observe("spillGB", s.runId, startMs, s.spillGB);
+    observe("gcOverExecPct", s.runId, startMs, s.gcOverExecPct);
+    if (matchRules != null) {
+      // a rule logged more than once in a run counts with its total time
+      Map<String, Double> byRule = new LinkedHashMap<>();
+      for (MatchRuleMetric r : matchRules) {
+        if (r.rule != null && r.matchTimeSec != null) byRule.merge(r.rule, r.matchTimeSec, Double::sum);
+      }
+      byRule.forEach((rule, sec) -> observe("rule:" + rule + ".matchTimeSec", s.runId, startMs, sec));
+    }
+    runIndex++;
+  }
+
+  public TrendReport finish() {
+    TrendReport r = new TrendReport();
+    r.runs = runIndex;
+    r.window = window;
+    for (Map.Entry<String, Series> e : series.entrySet()) {
+      TrendReport.MetricTrend t = e.getValue().trend;
+      if (!t.points.isEmpty()) {
+        TrendReport.Point last = t.points.get(t.points.size() - 1);
+        t.latestMedian = last.rollingMedian;
+        t.latestMad = last.rollingMad;
+      }
+      r.metrics.put(e.getKey(), t);
+    }
+    r.changePoints.addAll(changePoints);
+    r.changePoints.sort(Comparator.comparingInt((TrendReport.ChangePoint c) -> c.runIndex).thenComparing(c -> c.metric));
+    return r;
+  }
+
+  private void observe(String metric, String runId, long startMs, double x) {
+    Series s = series.computeIfAbsent(metric, k -> new Series());
+    s.observe(metric, runId, startMs, x);
+  }
+
+  /** Rolling window plus CUSUM state for one metric. */
+  private final class Series {
+    final TrendReport.MetricTrend trend = new TrendReport.MetricTrend();
+    final ArrayDeque<Double> recent = new ArrayDeque<>();
+
+    double sUp, sDown;
+    final Shift up = new Shift(), down = new Shift();
+
+    void observe(String metric, String runId, long startMs, double x) {
+      trend.observations++;
+      if (recent.size() >= WARMUP) {
+        double[] w = sorted(recent);
+        double med = median(w);
+        double mad = mad(w, med);
+        double scale = Math.max(1.4826 * mad, Math.max(0.01 * Math.abs(med), 1e-9));
+        double z = Math.max(-Z_CLIP, Math.min(Z_CLIP, (x - med) / scale));
+
+        sUp = up.step(sUp, z, runId, startMs, x);
+        sDown = down.step(sDown, -z, runId, startMs, x);
+
+        Shift alarm = sUp > H ? up : sDown > H ? down : null;
+        if (alarm != null && !material(med, median(sorted(alarm.values)))) {
+          // statistically real but too small to matter: absorb it into the reference level
+          if (alarm == up) sUp = 0;
+          else sDown = 0;
+          alarm.values.clear();
+          alarm = null;
+        }
+        if (alarm != null) {
+          TrendReport.ChangePoint c = new TrendReport.ChangePoint();
+          c.metric = metric;
+          c.runId = alarm.runId;
+          c.runIndex = alarm.runIndex;
+          c.startMs = alarm.startMs;
+          c.direction = alarm == up ? "UP" : "DOWN";
+          c.medianBefore = med;
+          c.medianAfter = median(sorted(alarm.values));
+          c.pctChange = Math.abs(med) > 1e-9 ? (c.medianAfter - med) / med * 100.0 : null;
+          c.detectedAtRunIndex = runIndex;
+          changePoints.add(c);
+
+          // the new level becomes the reference
+          recent.clear();
+          for (double v : alarm.values) push(v);
+          sUp = sDown = 0;
+          up.values.clear();
+          down.values.clear();
+          point(runId, startMs, x);
+          return;
+        }
+      }
+      push(x);
+      point(runId, startMs, x);
+    }
+
+    void push(double v) {
+      recent.addLast(v);
+      if (recent.size() > window) recent.removeFirst();
+    }
+
+    void point(String runId, long startMs, double x) {
+      double[] w = sorted(recent);
+      TrendReport.Point p = new TrendReport.Point();
+      p.runId = runId;
+      p.startMs = startMs;
+      p.value = x;
+      p.rollingMedian = median(w);
+      p.rollingMad = mad(w, p.rollingMedian);
+      trend.points.add(p);
+    }
+  }
+
+  /** One side of the CUSUM: where the current excursion started and the values since. */
+  private final class Shift {
+    final List<Double> values = new ArrayList<>();
+    String runId;
+    int runIndex;
+    long startMs;
+
+    double step(double s, double z, String runId, long startMs, double x) {
+      double next = Math.max(0, s + z - K);
+      if (next == 0) {
+        values.clear();
+        return 0;
+      }
+      if (s == 0) {
+        values.clear();
+        this.runId = runId;
+        this.runIndex = TrendAnalyzer.this.runIndex;
+        this.startMs = startMs;
+      }
+      values.add(x);
+      return next;
+    }
+  }
+
+  private static boolean material(double before, double after) {
+    double scale = Math.abs(before) > 1e-9 ? Math.abs(before) : Math.abs(after);
+    return scale > 1e-9 && Math.abs(after - before) / scale * 100.0 >= MIN_SHIFT_PCT;
+  }
+
+  private static double[] sorted(Collection<Double> c) {
+    double[] a = new double[c.size()];
+    int i = 0;
+    for (double v : c) a[i++] = v;
+    Arrays.sort(a);
+    return a;
+  }
+
+  private static double median(double[] sorted) {
+    int n = sorted.length;
+    if (n == 0) return 0.0;
+    return (n % 2 == 1) ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0;
+  }
+
+  private static double mad(double[] sorted, double med) {
+    double[] dev = new double[sorted.length];
+    for (int i = 0; i < sorted.length; i++) dev[i] = Math.abs(sorted[i] - med);
+    Arrays.sort(dev);
+    return median(dev);
+  }
+}
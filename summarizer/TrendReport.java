@@ -0,0 +1,42 @@
+package com.yourorg.sparklog;
+
+import java.util.*;
+
+public class TrendReport {
+
+  public int runs;
+  public int window;
+
+  // metric name -> trend; per-rule metrics are "rule:<name>.matchTimeSec"
+  public Map<String, MetricTrend> metrics = new LinkedHashMap<>();
+
+  // every detected shift, in run order
+  public List<ChangePoint> changePoints = new ArrayList<>();
+
+  public static class MetricTrend {
+    public int observations;
+    public Double latestMedian;
+    public Double latestMad;
+    public List<Point> points = new ArrayList<>();
+  }
+
+  public static class Point {
+    public String runId;
+    public long startMs;
+    public double value;
+    public double rollingMedian;
+    public double rollingMad;
+  }
+
+  public static class ChangePoint {
+    public String metric;
+    public String runId;      // first run at the new level
+    public int runIndex;      // 0-based position in the series of runs
+    public long startMs;
+    public String direction;  // UP / DOWN
+    public double medianBefore;
+    public double medianAfter;
+    public Double pctChange;
+    public int detectedAtRunIndex;
+  }
+}